@@ -0,0 +1,56 @@
+package com.incognito.tools.stickycorners.detector;
+
+import com.incognito.tools.stickycorners.detector.graphics.PointDir;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.awt.Rectangle;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of building the corners for a layout, as done whenever a detector is created.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Djava.awt.headless=true")
+public class CornersBenchmark {
+    @Param({"1", "4", "16", "64", "256"})
+    public int screens;
+
+    @Param("42")
+    public long seed;
+
+    private List<Rectangle> layout;
+    private Rectangle bounds;
+
+    @Setup
+    public void setup() {
+        Rectangle[] wall = Layouts.wall(screens, seed);
+        layout = Arrays.asList(wall);
+        bounds = Layouts.bounds(wall);
+    }
+
+    @Benchmark
+    public List<PointDir.Integer> find() {
+        return Corners.find(layout);
+    }
+
+    @Benchmark
+    public CornerIndex findAndIndex() {
+        return new CornerIndex(Corners.find(layout), bounds);
+    }
+}
@@ -0,0 +1,142 @@
+package com.incognito.tools.stickycorners.detector;
+
+import com.incognito.tools.stickycorners.detector.graphics.Barrier;
+import com.incognito.tools.stickycorners.detector.graphics.PointDir;
+
+import java.awt.Rectangle;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Reproducible screen layouts for the benchmarks.
+ */
+public final class Layouts {
+    private static final int[][] MODES = {
+            {1920, 1080}, {1920, 1200}, {2560, 1440}, {3840, 2160}, {1280, 1024}
+    };
+
+    private Layouts() {
+    }
+
+    /**
+     * Lays {@code screens} displays out in rows, left to right, each picked at random from a few
+     * common resolutions. Rows are as wide as the layout is tall in screens, and every row starts
+     * below the tallest screen of the one above, so mixed heights leave plenty of sticky corners.
+     */
+    public static Rectangle[] wall(int screens, long seed) {
+        Random random = new Random(seed);
+        int columns = (int) Math.ceil(Math.sqrt(screens));
+        Rectangle[] layout = new Rectangle[screens];
+        int x = 0;
+        int y = 0;
+        int rowHeight = 0;
+        for (int i = 0; i < screens; i++) {
+            if (i > 0 && i % columns == 0) {
+                x = 0;
+                y += rowHeight;
+                rowHeight = 0;
+            }
+            int[] mode = MODES[random.nextInt(MODES.length)];
+            layout[i] = new Rectangle(x, y, mode[0], mode[1]);
+            x += mode[0];
+            rowHeight = Math.max(rowHeight, mode[1]);
+        }
+        return layout;
+    }
+
+    /**
+     * Lays {@code screens} displays out one at a time, each against a random side of one already
+     * placed and slid along it by a random offset, so screens line up unevenly the way hand
+     * arranged setups do. A screen that would overlap another is placed again.
+     */
+    public static Rectangle[] scattered(int screens, long seed) {
+        Random random = new Random(seed);
+        List<Rectangle> layout = new ArrayList<>(screens);
+        while (layout.size() < screens) {
+            int[] mode = MODES[random.nextInt(MODES.length)];
+            if (layout.isEmpty()) {
+                layout.add(new Rectangle(0, 0, mode[0], mode[1]));
+                continue;
+            }
+            Rectangle next = new Rectangle(0, 0, mode[0], mode[1]);
+            Rectangle to = layout.get(random.nextInt(layout.size()));
+            switch (random.nextInt(4)) {
+                case 0:
+                    next.setLocation(to.x - next.width, to.y + random.nextInt(to.height + next.height) - next.height / 2 - to.height / 2);
+                    break;
+                case 1:
+                    next.setLocation(to.x + to.width, to.y + random.nextInt(to.height + next.height) - next.height / 2 - to.height / 2);
+                    break;
+                case 2:
+                    next.setLocation(to.x + random.nextInt(to.width + next.width) - next.width / 2 - to.width / 2, to.y - next.height);
+                    break;
+                default:
+                    next.setLocation(to.x + random.nextInt(to.width + next.width) - next.width / 2 - to.width / 2, to.y + to.height);
+                    break;
+            }
+            boolean overlaps = false;
+            for (Rectangle r : layout) {
+                overlaps |= r.intersects(next);
+            }
+            if (!overlaps) {
+                layout.add(next);
+            }
+        }
+        return layout.toArray(new Rectangle[0]);
+    }
+
+    public static Rectangle bounds(Rectangle[] layout) {
+        Rectangle bounds = new Rectangle();
+        for (Rectangle r : layout) {
+            Rectangle.union(bounds, r, bounds);
+        }
+        return bounds;
+    }
+
+    public static List<PointDir.Integer> corners(Rectangle[] layout) {
+        return Corners.find(new ArrayList<>(Arrays.asList(layout)));
+    }
+
+    /**
+     * @return an index of the corners of {@code layout}, which like the detector's is given them
+     * relative to the top left of the desktop
+     */
+    static CornerIndex index(Rectangle[] layout) {
+        return new CornerIndex(relative(layout), bounds(layout));
+    }
+
+    /**
+     * @return an index where, besides the corners, every edge between two screens is a sticky
+     * barrier
+     */
+    static CornerIndex stickyIndex(Rectangle[] layout) {
+        List<Barrier> barriers = new ArrayList<>();
+        for (Barrier b : edges(layout)) {
+            barriers.add(new Barrier(b.line, b.from, b.to, b.direction, true));
+        }
+        return new CornerIndex(relative(layout), barriers, bounds(layout));
+    }
+
+    /**
+     * @return every edge between two screens of {@code layout}, as pass-through barriers relative
+     * to the top left of the desktop
+     */
+    public static List<Barrier> edges(Rectangle[] layout) {
+        Rectangle bounds = bounds(layout);
+        List<Barrier> edges = new Corners(Arrays.asList(layout)).edges();
+        edges.replaceAll(b -> b.translate(-bounds.x, -bounds.y));
+        return edges;
+    }
+
+    private static List<PointDir.Integer> relative(Rectangle[] layout) {
+        Rectangle bounds = bounds(layout);
+        List<PointDir.Integer> corners = corners(layout);
+        for (PointDir.Integer p : corners) {
+            p.x -= bounds.x;
+            p.y -= bounds.y;
+        }
+        return corners;
+    }
+}
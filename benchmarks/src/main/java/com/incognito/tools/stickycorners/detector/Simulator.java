@@ -0,0 +1,214 @@
+package com.incognito.tools.stickycorners.detector;
+
+import com.incognito.tools.stickycorners.detector.graphics.PointDir;
+
+import java.awt.Rectangle;
+import java.awt.geom.Line2D;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Drives the {@link DetectorEngine} through thousands of random layouts and pointer strokes with
+ * no display, no GUI and no sleeps, and checks every warp it makes.
+ * <p>
+ * The simulated pointer behaves like the desktop's: a move that would leave every screen stops at
+ * the edge of the screen the pointer is on, which is what gets it stuck at corners in the first
+ * place. Strokes start near a random corner and head past it at a random speed. A warp counts as
+ * incorrect if any point of it is off every screen, if it doesn't end on a different screen from
+ * the one the pointer was stuck on, if it doesn't end next to the straight path the pointer took
+ * since the last sample, or if it strays further from its end than a corner's window and detour
+ * allow.
+ * <p>
+ * Usage: {@code java -cp benchmarks.jar com.incognito.tools.stickycorners.detector.Simulator
+ * [layouts] [max screens] [strokes per layout] [seed] [edges]}. With {@code edges}, every edge
+ * between two screens is also a sticky barrier. Exits with status 1 if any warp was incorrect.
+ */
+public class Simulator {
+    private static final int STEPS = 30;
+    private static final int REPORTED = 10;
+    private static final int REACH = CornerIndex.WINDOW + CornerIndex.DETOUR + 1;
+    /**
+     * How far a warp may end from the pointer's path: a step across the boundary, plus rounding.
+     */
+    private static final double CROSS = 2;
+
+    public static void main(String[] args) {
+        int layouts = args.length > 0 ? Integer.parseInt(args[0]) : 1000;
+        int maxScreens = args.length > 1 ? Math.max(2, Integer.parseInt(args[1])) : 12;
+        int strokes = args.length > 2 ? Integer.parseInt(args[2]) : 50;
+        long seed = args.length > 3 ? Long.parseLong(args[3]) : 42;
+        boolean edges = args.length > 4 && args[4].equals("edges");
+
+        Random random = new Random(seed);
+        long ticks = 0;
+        long warps = 0;
+        long incorrect = 0;
+        List<String> reported = new ArrayList<>();
+        long start = System.nanoTime();
+        for (int l = 0; l < layouts; l++) {
+            long layoutSeed = random.nextLong();
+            Rectangle[] layout = Layouts.scattered(2 + random.nextInt(maxScreens - 1), layoutSeed);
+            List<PointDir.Integer> corners = Layouts.corners(layout);
+            if (corners.isEmpty()) {
+                continue;
+            }
+            CornerIndex index = edges ? Layouts.stickyIndex(layout) : Layouts.index(layout);
+            SimulatedPointer pointer = new SimulatedPointer(layout);
+            DetectorEngine engine = new DetectorEngine(pointer, pointer,
+                    new SamplingScheduler(SamplingScheduler.DEFAULT_MIN_INTERVAL, SamplingScheduler.DEFAULT_MAX_INTERVAL),
+                    new DetectorMetrics(), null);
+
+            for (int s = 0; s < strokes; s++) {
+                PointDir.Integer p = corners.get(random.nextInt(corners.size()));
+                if (!pointer.jump(p.x + random.nextInt(81) - 40, p.y + random.nextInt(81) - 40)) {
+                    continue;
+                }
+                // a real pointer doesn't teleport, so let the engine see where the stroke starts
+                engine.tick(index, System.nanoTime());
+                ticks++;
+                double dx = p.x + random.nextInt(61) - 30 - pointer.x;
+                double dy = p.y + random.nextInt(61) - 30 - pointer.y;
+                double speed = 1 + random.nextInt(40);
+                double length = Math.max(1, Math.hypot(dx, dy));
+                dx = dx / length * speed;
+                dy = dy / length * speed;
+                double x = pointer.x;
+                double y = pointer.y;
+                for (int step = 0; step < STEPS; step++) {
+                    x += dx;
+                    y += dy;
+                    int lastX = pointer.x;
+                    int lastY = pointer.y;
+                    pointer.move((int) Math.round(x), (int) Math.round(y));
+                    int fromX = pointer.x;
+                    int fromY = pointer.y;
+                    pointer.moves = 0;
+                    engine.tick(index, System.nanoTime());
+                    ticks++;
+                    if (pointer.moves > 0) {
+                        warps++;
+                        String problem = pointer.check(lastX, lastY, fromX, fromY);
+                        if (problem != null) {
+                            incorrect++;
+                            if (reported.size() < REPORTED) {
+                                reported.add("layout " + layoutSeed + ", stuck at " + fromX + "," + fromY + ": " + problem);
+                            }
+                        }
+                        x = pointer.x;
+                        y = pointer.y;
+                    }
+                }
+            }
+        }
+        long elapsed = System.nanoTime() - start;
+
+        System.out.println("Simulated " + ticks + " ticks over " + layouts + " layouts in " + elapsed / 1_000_000 + "ms: "
+                + (long) (ticks / (elapsed / 1e9)) + " ticks/s");
+        System.out.println("Warps: " + warps + ", incorrect: " + incorrect);
+        for (String line : reported) {
+            System.out.println("  " + line);
+        }
+        if (incorrect > 0) {
+            System.exit(1);
+        }
+    }
+
+    /**
+     * A pointer on a fixed set of screens, read and moved by the engine like the real one.
+     */
+    private static class SimulatedPointer implements PointerSource, PointerActuator {
+        private final Rectangle[] screens;
+        private final int[] path = new int[6];
+        int moves;
+        int x;
+        int y;
+
+        SimulatedPointer(Rectangle[] screens) {
+            this.screens = screens;
+        }
+
+        @Override
+        public boolean locate(int[] position) {
+            position[0] = x;
+            position[1] = y;
+            return true;
+        }
+
+        @Override
+        public void moveTo(int x, int y) {
+            if (moves < path.length / 2) {
+                path[moves * 2] = x;
+                path[moves * 2 + 1] = y;
+            }
+            moves++;
+            if (screen(x, y) >= 0) {
+                this.x = x;
+                this.y = y;
+            }
+        }
+
+        /**
+         * Puts the pointer at ({@code x}, {@code y}) if that's on a screen.
+         */
+        boolean jump(int x, int y) {
+            if (screen(x, y) < 0) {
+                return false;
+            }
+            this.x = x;
+            this.y = y;
+            return true;
+        }
+
+        /**
+         * Moves the pointer the way the user would, stopping at the edge of its screen if
+         * ({@code x}, {@code y}) is off every screen.
+         */
+        void move(int x, int y) {
+            if (screen(x, y) >= 0) {
+                this.x = x;
+                this.y = y;
+                return;
+            }
+            Rectangle r = screens[screen(this.x, this.y)];
+            this.x = CornerIndex.clamp(x, r.x, r.x + r.width - 1);
+            this.y = CornerIndex.clamp(y, r.y, r.y + r.height - 1);
+        }
+
+        /**
+         * @return what's wrong with the warp just made for a pointer that moved from
+         * ({@code lastX}, {@code lastY}) to ({@code fromX}, {@code fromY}), or null if nothing is
+         */
+        String check(int lastX, int lastY, int fromX, int fromY) {
+            if (moves != path.length / 2) {
+                return moves + " moves instead of " + path.length / 2;
+            }
+            int endX = path[path.length - 2];
+            int endY = path[path.length - 1];
+            for (int p = 0; p < path.length; p += 2) {
+                if (screen(path[p], path[p + 1]) < 0) {
+                    return "moved off screen to " + path[p] + "," + path[p + 1];
+                }
+                if (Math.max(Math.abs(path[p] - endX), Math.abs(path[p + 1] - endY)) > REACH) {
+                    return "detoured too far, to " + path[p] + "," + path[p + 1];
+                }
+            }
+            if (Line2D.ptSegDist(lastX, lastY, fromX, fromY, endX, endY) > CROSS) {
+                return "moved away from its path, to " + endX + "," + endY;
+            }
+            if (screen(endX, endY) == screen(fromX, fromY)) {
+                return "stayed on the same screen at " + endX + "," + endY;
+            }
+            return null;
+        }
+
+        private int screen(int x, int y) {
+            for (int i = 0; i < screens.length; i++) {
+                if (screens[i].contains(x, y)) {
+                    return i;
+                }
+            }
+            return -1;
+        }
+    }
+}
@@ -0,0 +1,88 @@
+package com.incognito.tools.stickycorners.detector;
+
+import com.incognito.tools.stickycorners.detector.graphics.PointDir;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.awt.Rectangle;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of one detector tick: finding the corner a sample is stuck on, and the distance to the
+ * nearest corner the scheduler uses to pick the next sample, looked for only as far as
+ * {@code reach}.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Djava.awt.headless=true")
+public class TickBenchmark {
+    private static final int SAMPLES = 1024;
+
+    @Param({"2", "8", "16", "64"})
+    public int screens;
+
+    @Param("42")
+    public long seed;
+
+    /**
+     * How far out the distance is looked for, as {@link SamplingScheduler#reach} gives it: 0 for a
+     * pointer holding still, 500 for one moving a pixel a millisecond under the default longest
+     * wait, and unbounded.
+     */
+    @Param({"0", "500", "2147483647"})
+    public int reach;
+
+    private CornerIndex index;
+    private final int[] lastX = new int[SAMPLES];
+    private final int[] lastY = new int[SAMPLES];
+    private final int[] x = new int[SAMPLES];
+    private final int[] y = new int[SAMPLES];
+    private int next;
+
+    /**
+     * Half the samples are anywhere on the desktop, the other half land within a few pixels of
+     * a random corner so the matching rules actually get exercised.
+     */
+    @Setup
+    public void setup() {
+        Rectangle[] layout = Layouts.wall(screens, seed);
+        Rectangle bounds = Layouts.bounds(layout);
+        List<PointDir.Integer> corners = Layouts.corners(layout);
+        index = new CornerIndex(corners, bounds);
+
+        Random random = new Random(seed);
+        for (int i = 0; i < SAMPLES; i++) {
+            if (i % 2 == 0 || corners.isEmpty()) {
+                x[i] = random.nextInt(bounds.width);
+                y[i] = random.nextInt(bounds.height);
+            } else {
+                PointDir.Integer p = corners.get(random.nextInt(corners.size()));
+                x[i] = p.x + random.nextInt(3) - 1;
+                y[i] = p.y + random.nextInt(3) - 1;
+            }
+            lastX[i] = x[i] + random.nextInt(17) - 8;
+            lastY[i] = y[i] + random.nextInt(17) - 8;
+        }
+    }
+
+    @Benchmark
+    public int tick() {
+        int i = next;
+        next = (i + 1) & (SAMPLES - 1);
+        return index.match(lastX[i], lastY[i], x[i], y[i]) + index.distance(x[i], y[i], reach);
+    }
+}
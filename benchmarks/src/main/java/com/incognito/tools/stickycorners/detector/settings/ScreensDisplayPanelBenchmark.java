@@ -0,0 +1,52 @@
+package com.incognito.tools.stickycorners.detector.settings;
+
+import com.incognito.tools.stickycorners.detector.Layouts;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.awt.Rectangle;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of rescaling the settings preview, done every time the panel is resized.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Djava.awt.headless=true")
+public class ScreensDisplayPanelBenchmark {
+    @Param({"1", "4", "16", "64", "256"})
+    public int screens;
+
+    @Param("42")
+    public long seed;
+
+    private ScreensDisplayPanel panel;
+
+    @Setup
+    public void setup() {
+        Rectangle[] layout = Layouts.wall(screens, seed);
+        panel = new ScreensDisplayPanel(Arrays.asList(layout), Layouts.corners(layout), Layouts.edges(layout),
+                Collections.emptyList());
+        panel.setSize(800, 400);
+    }
+
+    @Benchmark
+    public ScreensDisplayPanel updateScaled() {
+        panel.updateScaled();
+        return panel;
+    }
+}
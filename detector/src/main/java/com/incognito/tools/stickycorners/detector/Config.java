@@ -0,0 +1,131 @@
+package com.incognito.tools.stickycorners.detector;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Objects;
+import java.util.Properties;
+import java.util.Set;
+
+/**
+ * The detector's tuning, as read from the config file, a {@link Properties} file with these keys,
+ * all optional:
+ * <ul>
+ * <li>{@code sample.min}, {@code sample.max}: shortest and longest wait between pointer samples,
+ * in milliseconds</li>
+ * <li>{@code capture.window}: how far, in pixels, a corner reaches into the screen</li>
+ * <li>{@code capture.detour}: how far, in pixels, the pointer is taken into the screen when it
+ * crosses at a corner</li>
+ * <li>{@code warp}: {@code auto}, {@code three-step} or {@code direct}</li>
+ * <li>{@code refresh.interval}: seconds between automatic layout refreshes</li>
+ * </ul>
+ * Keys left out keep the value the detector was started with. A file with an unknown key or a
+ * value out of range is rejected as a whole, so a config is never applied halfway.
+ */
+final class Config {
+    static final String SAMPLE_MIN = "sample.min";
+    static final String SAMPLE_MAX = "sample.max";
+    static final String CAPTURE_WINDOW = "capture.window";
+    static final String CAPTURE_DETOUR = "capture.detour";
+    static final String WARP = "warp";
+    static final String REFRESH_INTERVAL = "refresh.interval";
+    private static final Set<String> KEYS = new HashSet<>(Arrays.asList(
+            SAMPLE_MIN, SAMPLE_MAX, CAPTURE_WINDOW, CAPTURE_DETOUR, WARP, REFRESH_INTERVAL));
+
+    static final int MAX_CAPTURE = 100;
+    static final long MIN_REFRESH = 5;
+    static final long MAX_REFRESH = 604800;
+
+    final long sampleMin;
+    final long sampleMax;
+    final int captureWindow;
+    final int captureDetour;
+    final String warp;
+    final long refreshInterval;
+
+    Config(long sampleMin, long sampleMax, int captureWindow, int captureDetour, String warp, long refreshInterval) {
+        this.sampleMin = sampleMin;
+        this.sampleMax = sampleMax;
+        this.captureWindow = captureWindow;
+        this.captureDetour = captureDetour;
+        this.warp = warp;
+        this.refreshInterval = refreshInterval;
+    }
+
+    /**
+     * @return {@code file} laid over {@code defaults}
+     * @throws IllegalArgumentException if anything in it is unknown or out of range
+     */
+    static Config read(Path file, Config defaults) throws IOException {
+        Properties properties = new Properties();
+        try (Reader in = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+            properties.load(in);
+        }
+        return parse(properties, defaults);
+    }
+
+    static Config parse(Properties properties, Config defaults) {
+        for (String key : properties.stringPropertyNames()) {
+            if (!KEYS.contains(key)) {
+                throw new IllegalArgumentException("unknown key " + key);
+            }
+        }
+        long sampleMin = number(properties, SAMPLE_MIN, defaults.sampleMin, 1, Long.MAX_VALUE);
+        long sampleMax = number(properties, SAMPLE_MAX, defaults.sampleMax, 1, Long.MAX_VALUE);
+        if (sampleMax < sampleMin) {
+            throw new IllegalArgumentException(SAMPLE_MAX + " " + sampleMax + " is below " + SAMPLE_MIN + " " + sampleMin);
+        }
+        int captureWindow = (int) number(properties, CAPTURE_WINDOW, defaults.captureWindow, 1, MAX_CAPTURE);
+        int captureDetour = (int) number(properties, CAPTURE_DETOUR, defaults.captureDetour, 0, MAX_CAPTURE);
+        String warp = properties.getProperty(WARP, defaults.warp).trim();
+        if (!warp.equals(WarpStrategy.AUTO) && WarpStrategy.named(warp) == null) {
+            throw new IllegalArgumentException(WARP + " must be " + WarpStrategy.AUTO + ", "
+                    + ThreeStepWarp.NAME + " or " + DirectWarp.NAME + ", not " + warp);
+        }
+        long refreshInterval = number(properties, REFRESH_INTERVAL, defaults.refreshInterval, MIN_REFRESH, MAX_REFRESH);
+        return new Config(sampleMin, sampleMax, captureWindow, captureDetour, warp, refreshInterval);
+    }
+
+    private static long number(Properties properties, String key, long fallback, long min, long max) {
+        String value = properties.getProperty(key);
+        if (value == null) {
+            return fallback;
+        }
+        long n;
+        try {
+            n = Long.parseLong(value.trim());
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException(key + " must be a whole number, not " + value);
+        }
+        if (n < min || n > max) {
+            throw new IllegalArgumentException(key + " must be between " + min + " and " + max + ", not " + n);
+        }
+        return n;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (!(o instanceof Config)) {
+            return false;
+        }
+        Config c = (Config) o;
+        return sampleMin == c.sampleMin && sampleMax == c.sampleMax && captureWindow == c.captureWindow
+                && captureDetour == c.captureDetour && warp.equals(c.warp) && refreshInterval == c.refreshInterval;
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(sampleMin, sampleMax, captureWindow, captureDetour, warp, refreshInterval);
+    }
+
+    @Override
+    public String toString() {
+        return SAMPLE_MIN + "=" + sampleMin + ", " + SAMPLE_MAX + "=" + sampleMax + ", "
+                + CAPTURE_WINDOW + "=" + captureWindow + ", " + CAPTURE_DETOUR + "=" + captureDetour + ", "
+                + WARP + "=" + warp + ", " + REFRESH_INTERVAL + "=" + refreshInterval;
+    }
+}
@@ -0,0 +1,164 @@
+package com.incognito.tools.stickycorners.detector;
+
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BiConsumer;
+import java.util.logging.Logger;
+
+/**
+ * Keeps a {@link Config} in step with its file while the detector runs. A thread waits on a
+ * {@link WatchService} for the file's directory, and whenever the file is written, replaced or
+ * created it is read again and, if it parses and differs from the one in effect, handed to the
+ * listener along with the one it replaces. A file that doesn't parse is logged and ignored, leaving
+ * the last good config in effect; one that was deleted leaves it in effect too.
+ */
+class ConfigWatcher {
+    private static Logger log = Logger.getLogger("ConfigWatcher");
+
+    /**
+     * How long to let a burst of events settle, since editors often write a file in several
+     * steps, before reading it.
+     */
+    static final long SETTLE = 100;
+
+    private final Path file;
+    private final Config defaults;
+    private final BiConsumer<Config, Config> apply;
+    private volatile Config current;
+    private WatchService watcher;
+    private Thread thread;
+
+    /**
+     * @param defaults what keys missing from the file, or the whole file if there is none, fall
+     *                 back to
+     * @param apply    called on the watching thread with the config in effect and the one
+     *                 replacing it
+     */
+    ConfigWatcher(Path file, Config defaults, BiConsumer<Config, Config> apply) {
+        this.file = file.toAbsolutePath();
+        this.defaults = defaults;
+        this.apply = apply;
+        this.current = defaults;
+    }
+
+    static Path defaultFile() {
+        return Profiles.defaultFile().resolveSibling("config.properties");
+    }
+
+    /**
+     * Reads the file once, without calling the listener.
+     *
+     * @return the config to start with, the defaults if the file is missing or rejected
+     */
+    Config load() {
+        Config loaded = read();
+        if (loaded != null) {
+            current = loaded;
+            log.info(() -> "Loaded " + file + ": " + loaded);
+        }
+        return current;
+    }
+
+    /**
+     * Starts watching the file, creating its directory if need be.
+     */
+    synchronized void start() {
+        try {
+            Files.createDirectories(file.getParent());
+            watcher = file.getFileSystem().newWatchService();
+            file.getParent().register(watcher, StandardWatchEventKinds.ENTRY_CREATE,
+                    StandardWatchEventKinds.ENTRY_MODIFY, StandardWatchEventKinds.ENTRY_DELETE);
+        } catch (IOException e) {
+            log.severe(() -> "Could not watch " + file + ", config changes need a restart: " + e.getMessage());
+            return;
+        }
+        thread = new Thread(this::watch, "config-watcher");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    synchronized void close() {
+        if (watcher != null) {
+            try {
+                watcher.close();
+            } catch (IOException e) {
+                log.warning(() -> "Could not stop watching " + file + ": " + e.getMessage());
+            }
+        }
+    }
+
+    Config getCurrent() {
+        return current;
+    }
+
+    private void watch() {
+        try {
+            while (true) {
+                WatchKey key = watcher.take();
+                boolean changed = touches(key);
+                // wait for the writes to settle, taking in whatever else they set off
+                while ((key = watcher.poll(SETTLE, TimeUnit.MILLISECONDS)) != null) {
+                    changed |= touches(key);
+                }
+                if (changed) {
+                    reload();
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (ClosedWatchServiceException e) {
+            // closed on exit
+        }
+    }
+
+    /**
+     * @return whether any of {@code key}'s events may have changed the file
+     */
+    private boolean touches(WatchKey key) {
+        boolean touched = false;
+        for (WatchEvent<?> event : key.pollEvents()) {
+            if (event.kind() == StandardWatchEventKinds.OVERFLOW || file.getFileName().equals(event.context())) {
+                touched = true;
+            }
+        }
+        key.reset();
+        return touched;
+    }
+
+    private void reload() {
+        Config next = read();
+        Config previous = current;
+        if (next == null || next.equals(previous)) {
+            return;
+        }
+        log.info(() -> "Applying " + file + ": " + next);
+        current = next;
+        try {
+            apply.accept(previous, next);
+        } catch (RuntimeException e) {
+            log.severe(() -> "Could not apply " + file + ": " + e);
+        }
+    }
+
+    /**
+     * @return the file laid over the defaults, or null if it is missing or rejected
+     */
+    private Config read() {
+        try {
+            return Config.read(file, defaults);
+        } catch (NoSuchFileException e) {
+            return null;
+        } catch (IOException | IllegalArgumentException e) {
+            log.warning(() -> "Rejected " + file + ", keeping the settings in effect: " + e.getMessage());
+            return null;
+        }
+    }
+}
@@ -0,0 +1,643 @@
+package com.incognito.tools.stickycorners.detector;
+
+import com.incognito.tools.stickycorners.detector.graphics.Barrier;
+import com.incognito.tools.stickycorners.detector.graphics.Corner;
+import com.incognito.tools.stickycorners.detector.graphics.PointDir;
+
+import java.awt.Rectangle;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Corners and barriers compiled into warp rules, and the rules flattened into sorted, disjoint
+ * pieces of boundary bucketed by the line they sit on, so a sample only ever looks at its own
+ * column and row and finds the piece it is stuck on with one binary search.
+ * <p>
+ * Each rule is described along two axes: {@code a} crosses the boundary ({@code x} for a horizontal
+ * boundary, {@code y} for a vertical one) and {@code b} runs along it. A corner's rule covers
+ * {@code [lo, hi]}, the window reaching {@link #window} pixels from the corner into the screen,
+ * and a barrier's covers its whole stretch. A sample is stuck when it sits on a boundary line,
+ * moved along {@code a} in the direction of {@link #step}, and the straight path from the last
+ * sample entered the line inside a piece; see {@link #crossing}. The pointer is then taken
+ * {@link #detour} pixels further into the screen along {@code b} from where it entered,
+ * {@link #cornerDetour} for a corner and none for a barrier, one step across the boundary, and
+ * back. Windows and detours never leave {@code [spanLo, spanHi]}, the stretch along which the
+ * screens on both sides of the boundary actually meet, so every point of the path is on a screen.
+ * <p>
+ * Rules are stored corners first, horizontal boundaries before vertical ones sorted by the line
+ * they sit on, then barriers in the order given. Where rules on the same line and way across
+ * overlap, a pass-through barrier wins over an enabled corner, which wins over a sticky barrier;
+ * disabled corners don't take part. With no barriers the pieces are exactly the windows of the
+ * enabled corners, cut to their stretch. Pieces are stored horizontal boundaries first; {@code xStart}/{@code yStart}
+ * hold where each run begins, addressed directly by {@code 2 * a}, plus one when crossing towards
+ * larger coordinates, with {@code a} relative to {@code originX}/{@code originY}, the top left of
+ * the desktop. The corners and barriers passed in are relative to the same origin; everything the
+ * detector passes in or gets back is in desktop coordinates.
+ */
+class CornerIndex {
+    static final int WINDOW = 5;
+    static final int DETOUR = 10;
+
+    final int originX;
+    final int originY;
+    final int width;
+    final int height;
+    final int window;
+    final int cornerDetour;
+    final int[] x;
+    final int[] y;
+    final Corner[] corner;
+    final boolean[] horizontal;
+    final boolean[] enabled;
+    final int[] lo;
+    final int[] hi;
+    final int[] step;
+    final int[] detour;
+    final int[] spanLo;
+    final int[] spanHi;
+    final int corners;
+    private final PointDir.Integer[] source;
+    private final Barrier[] barriers;
+
+    private final int[] pieceLo;
+    private final int[] pieceHi;
+    private final int[] pieceRule;
+    private final int[] xStart;
+    private final int[] yStart;
+    private final int[] xKeys;
+    private final int[] yKeys;
+
+    CornerIndex(List<PointDir.Integer> corners, Rectangle bounds) {
+        this(corners, Collections.emptyList(), bounds);
+    }
+
+    CornerIndex(List<PointDir.Integer> corners, List<Barrier> barriers, Rectangle bounds) {
+        this(corners, barriers, bounds, WINDOW, DETOUR);
+    }
+
+    /**
+     * @param window       how far, in pixels, each corner's window reaches into the screen
+     * @param cornerDetour how far, in pixels, the pointer is taken into the screen when it crosses
+     *                     at a corner
+     */
+    CornerIndex(List<PointDir.Integer> corners, List<Barrier> barriers, Rectangle bounds, int window,
+                int cornerDetour) {
+        this.window = window;
+        this.cornerDetour = cornerDetour;
+        width = bounds.width;
+        height = bounds.height;
+        originX = bounds.x;
+        originY = bounds.y;
+        List<PointDir.Integer> sorted = new ArrayList<>(corners.size());
+        for (PointDir.Integer p : corners) {
+            if (p.direction.isHorizontalBoundary() ? p.x >= 0 && p.x < width : p.y >= 0 && p.y < height) {
+                sorted.add(p);
+            }
+        }
+        sorted.sort(Comparator.<PointDir.Integer>comparingInt(p -> p.direction.isHorizontalBoundary() ? 0 : 1)
+                .thenComparingInt(p -> p.direction.isHorizontalBoundary() ? p.x : p.y));
+        List<Barrier> kept = new ArrayList<>(barriers.size());
+        for (Barrier b : barriers) {
+            if (b.line >= 0 && b.line < (b.isHorizontalCrossing() ? width : height)) {
+                kept.add(b);
+            }
+        }
+
+        this.corners = sorted.size();
+        int n = this.corners + kept.size();
+        source = new PointDir.Integer[n];
+        this.barriers = new Barrier[n];
+        x = new int[n];
+        y = new int[n];
+        corner = new Corner[n];
+        horizontal = new boolean[n];
+        enabled = new boolean[n];
+        lo = new int[n];
+        hi = new int[n];
+        step = new int[n];
+        detour = new int[n];
+        spanLo = new int[n];
+        spanHi = new int[n];
+        int[] inward = new int[this.corners];
+        for (int i = 0; i < this.corners; i++) {
+            PointDir.Integer p = sorted.get(i);
+            source[i] = p;
+            x[i] = p.x;
+            y[i] = p.y;
+            corner[i] = p.corner;
+            horizontal[i] = p.direction.isHorizontalBoundary();
+            enabled[i] = p.enabled;
+            inward[i] = compile(i);
+        }
+        share(inward);
+        for (int i = this.corners; i < n; i++) {
+            Barrier b = kept.get(i - this.corners);
+            this.barriers[i] = b;
+            horizontal[i] = b.isHorizontalCrossing();
+            x[i] = horizontal[i] ? b.line : b.from;
+            y[i] = horizontal[i] ? b.from : b.line;
+            enabled[i] = b.sticky;
+            lo[i] = b.from;
+            hi[i] = b.to;
+            spanLo[i] = b.from;
+            spanHi[i] = b.to;
+            step[i] = b.step();
+        }
+
+        Pieces pieces = new Pieces(this, enabled);
+        pieceLo = pieces.lo;
+        pieceHi = pieces.hi;
+        pieceRule = pieces.rule;
+        xStart = pieces.xStart;
+        yStart = pieces.yStart;
+        xKeys = keys(xStart);
+        yKeys = keys(yStart);
+    }
+
+    /**
+     * Fills in the rule for corner {@code i}. A horizontal boundary is crossed leftwards at a
+     * left corner and rightwards at a right one, and its window and detour point down from a top
+     * corner and up from a bottom one; a vertical boundary is the same with the axes swapped.
+     *
+     * @return which way along the boundary the window points, -1 or 1
+     */
+    private int compile(int i) {
+        boolean left = corner[i] == Corner.TL || corner[i] == Corner.BL;
+        boolean top = corner[i] == Corner.TL || corner[i] == Corner.TR;
+        int inward;
+        int b;
+        if (horizontal[i]) {
+            step[i] = left ? -1 : 1;
+            inward = top ? 1 : -1;
+            b = y[i];
+        } else {
+            step[i] = top ? -1 : 1;
+            inward = left ? 1 : -1;
+            b = x[i];
+        }
+        lo[i] = inward > 0 ? b : b - window;
+        hi[i] = inward > 0 ? b + window : b;
+        detour[i] = inward * cornerDetour;
+        return inward;
+    }
+
+    /**
+     * Works out the stretch each corner's screen shares with the one across the boundary. It runs
+     * from the corner inwards up to the nearest corner on the same boundary, on either side of it,
+     * whose window points back the other way: that is where one of the two screens ends. A corner
+     * with nothing facing it isn't limited. Windows are then cut to their stretch.
+     * <p>
+     * Corners are sorted by boundary and then along it, the way {@link Corners} sorts edges, so
+     * each corner finds the one facing it in a pass up and a pass down its boundary.
+     */
+    private void share(int[] inward) {
+        Integer[] order = new Integer[corners];
+        for (int i = 0; i < corners; i++) {
+            order[i] = i;
+        }
+        Arrays.sort(order, Comparator.<Integer>comparingInt(i -> horizontal[i] ? 0 : 1)
+                .thenComparingInt(this::boundary)
+                .thenComparingInt(this::along));
+        for (int from = 0, to; from < corners; from = to) {
+            to = from + 1;
+            while (to < corners && horizontal[order[to]] == horizontal[order[from]]
+                    && boundary(order[to]) == boundary(order[from])) {
+                to++;
+            }
+            // back from the far end, a window pointing on along the boundary ends at the nearest
+            // corner at or past it pointing back
+            int end = Integer.MAX_VALUE;
+            for (int k = to - 1, run; k >= from; k = run) {
+                int b = along(order[k]);
+                for (run = k; run >= from && along(order[run]) == b; run--) {
+                    if (inward[order[run]] < 0) {
+                        end = b;
+                    }
+                }
+                for (int r = k; r > run; r--) {
+                    if (inward[order[r]] > 0) {
+                        spanLo[order[r]] = b;
+                        spanHi[order[r]] = end;
+                    }
+                }
+            }
+            // and forwards from the near end the other way round
+            end = Integer.MIN_VALUE;
+            for (int k = from, run; k < to; k = run) {
+                int b = along(order[k]);
+                for (run = k; run < to && along(order[run]) == b; run++) {
+                    if (inward[order[run]] > 0) {
+                        end = b;
+                    }
+                }
+                for (int r = k; r < run; r++) {
+                    if (inward[order[r]] < 0) {
+                        spanLo[order[r]] = end;
+                        spanHi[order[r]] = b;
+                    }
+                }
+            }
+        }
+        for (int i = 0; i < corners; i++) {
+            lo[i] = Math.max(lo[i], spanLo[i]);
+            hi[i] = Math.min(hi[i], spanHi[i]);
+        }
+    }
+
+    /**
+     * @return where along its boundary corner {@code i} is
+     */
+    private int along(int i) {
+        return horizontal[i] ? y[i] : x[i];
+    }
+
+    /**
+     * @return the grid line between two columns or rows that rule {@code i} crosses, the same for
+     * the rules on either side of it
+     */
+    private int boundary(int i) {
+        return (horizontal[i] ? x[i] : y[i]) + (step[i] > 0 ? 1 : 0);
+    }
+
+    /**
+     * The rules flattened into pieces, as {@link CornerIndex} describes.
+     */
+    private static final class Pieces {
+        final int[] lo;
+        final int[] hi;
+        final int[] rule;
+        final int[] xStart;
+        final int[] yStart;
+
+        Pieces(CornerIndex index, boolean[] enabled) {
+            int n = enabled.length;
+            Integer[] order = new Integer[n];
+            for (int i = 0; i < n; i++) {
+                order[i] = i;
+            }
+            Arrays.sort(order, Comparator.<Integer>comparingInt(i -> index.horizontal[i] ? 0 : 1)
+                    .thenComparingInt(i -> key(index, i)));
+
+            // a group of k rules has at most 2k - 1 elementary stretches between their ends
+            int[] keys = new int[n * 2];
+            int[] los = new int[keys.length];
+            int[] his = new int[keys.length];
+            int[] rules = new int[keys.length];
+            int count = 0;
+            int split = 0;
+            for (int g = 0; g < n; ) {
+                int end = g + 1;
+                while (end < n && index.horizontal[order[end]] == index.horizontal[order[g]]
+                        && key(index, order[end]) == key(index, order[g])) {
+                    end++;
+                }
+                int[] bounds = new int[(end - g) * 2];
+                for (int k = g; k < end; k++) {
+                    bounds[(k - g) * 2] = index.lo[order[k]];
+                    bounds[(k - g) * 2 + 1] = index.hi[order[k]] + 1;
+                }
+                Arrays.sort(bounds);
+                for (int k = 0; k + 1 < bounds.length; k++) {
+                    if (bounds[k] == bounds[k + 1]) {
+                        continue;
+                    }
+                    int winner = winner(index, enabled, order, g, end, bounds[k]);
+                    if (winner < 0) {
+                        continue;
+                    }
+                    if (count > 0 && rules[count - 1] == winner && his[count - 1] + 1 == bounds[k]
+                            && keys[count - 1] == key(index, winner)) {
+                        his[count - 1] = bounds[k + 1] - 1;
+                        continue;
+                    }
+                    keys[count] = key(index, winner);
+                    los[count] = bounds[k];
+                    his[count] = bounds[k + 1] - 1;
+                    rules[count] = winner;
+                    count++;
+                }
+                if (index.horizontal[order[g]]) {
+                    split = count;
+                }
+                g = end;
+            }
+            lo = Arrays.copyOf(los, count);
+            hi = Arrays.copyOf(his, count);
+            rule = Arrays.copyOf(rules, count);
+            xStart = starts(keys, 0, split, 2 * index.width);
+            yStart = starts(keys, split, count, 2 * index.height);
+        }
+
+        /**
+         * @return the rule that decides the piece starting at {@code b}, or -1 if none does or a
+         * pass-through barrier does
+         */
+        private static int winner(CornerIndex index, boolean[] enabled, Integer[] order, int from, int to, int b) {
+            int best = -1;
+            int bestRank = 0;
+            for (int k = from; k < to; k++) {
+                int i = order[k];
+                if (b < index.lo[i] || b > index.hi[i]) {
+                    continue;
+                }
+                int rank = index.barriers[i] == null ? (enabled[i] ? 2 : 0) : (enabled[i] ? 1 : 3);
+                if (rank > bestRank || rank == bestRank && rank > 0 && i < best) {
+                    best = i;
+                    bestRank = rank;
+                }
+            }
+            return bestRank == 3 ? -1 : best;
+        }
+
+        private static int key(CornerIndex index, int i) {
+            return 2 * (index.horizontal[i] ? index.x[i] : index.y[i]) + (index.step[i] > 0 ? 1 : 0);
+        }
+    }
+
+    /**
+     * Builds the run offsets for one half of the pieces: entry {@code k} is the first index whose
+     * key is {@code >= k}, entry {@code size} is the end of the half.
+     */
+    private static int[] starts(int[] keys, int from, int to, int size) {
+        int[] starts = new int[size + 1];
+        int i = from;
+        for (int k = 0; k <= size; k++) {
+            while (i < to && keys[i] < k) {
+                i++;
+            }
+            starts[k] = i;
+        }
+        return starts;
+    }
+
+    /**
+     * @return every line, as a coordinate rather than a key, with pieces on it, in order
+     */
+    private static int[] keys(int[] starts) {
+        int[] keys = new int[starts.length / 2];
+        int n = 0;
+        for (int k = 0; k < keys.length; k++) {
+            if (starts[2 * k + 2] > starts[2 * k]) {
+                keys[n++] = k;
+            }
+        }
+        return Arrays.copyOf(keys, n);
+    }
+
+    private CornerIndex(CornerIndex from, PointDir.Integer[] source, boolean[] enabled) {
+        originX = from.originX;
+        originY = from.originY;
+        width = from.width;
+        height = from.height;
+        window = from.window;
+        cornerDetour = from.cornerDetour;
+        x = from.x;
+        y = from.y;
+        corner = from.corner;
+        horizontal = from.horizontal;
+        lo = from.lo;
+        hi = from.hi;
+        step = from.step;
+        detour = from.detour;
+        spanLo = from.spanLo;
+        spanHi = from.spanHi;
+        corners = from.corners;
+        barriers = from.barriers;
+        this.source = source;
+        this.enabled = enabled;
+        Pieces pieces = new Pieces(this, enabled);
+        pieceLo = pieces.lo;
+        pieceHi = pieces.hi;
+        pieceRule = pieces.rule;
+        xStart = pieces.xStart;
+        yStart = pieces.yStart;
+        xKeys = keys(xStart);
+        yKeys = keys(yStart);
+    }
+
+    /**
+     * @return an index where {@code replacement} takes the place of {@code corner}, sharing
+     * the rules with this one and only flattening them again, or this index if {@code corner}
+     * isn't in it. Only the enabled flag of {@code replacement} is looked at.
+     */
+    CornerIndex withEnabled(PointDir.Integer corner, PointDir.Integer replacement) {
+        for (int i = 0; i < corners; i++) {
+            if (source[i] == corner) {
+                PointDir.Integer[] nextSource = source.clone();
+                boolean[] nextEnabled = enabled.clone();
+                nextSource[i] = replacement;
+                nextEnabled[i] = replacement.enabled;
+                return new CornerIndex(this, nextSource, nextEnabled);
+            }
+        }
+        return this;
+    }
+
+    /**
+     * @return whether {@code other} has the same rules in the same order as this index, only
+     * enabled differently
+     */
+    boolean sameCorners(CornerIndex other) {
+        return other != null && other.x == x;
+    }
+
+    /**
+     * @return the corner rule {@code i} was compiled from, relative to the origin, or null if it
+     * was compiled from a barrier
+     */
+    PointDir.Integer source(int i) {
+        return source[i];
+    }
+
+    /**
+     * @return the barrier rule {@code i} was compiled from, relative to the origin, or null if it
+     * was compiled from a corner
+     */
+    Barrier barrier(int i) {
+        return barriers[i];
+    }
+
+    /**
+     * @return how rule {@code i} is described in reports, in desktop coordinates
+     */
+    String describe(int i) {
+        if (barriers[i] != null) {
+            return barriers[i].translate(originX, originY).toString();
+        }
+        return corner[i] + " " + (horizontal[i] ? "horizontal" : "vertical")
+                + " at " + (x[i] + originX) + "," + (y[i] + originY);
+    }
+
+    /**
+     * @return whether ({@code px}, {@code py}), in desktop coordinates, is past rule {@code i}'s
+     * boundary, on the side its warps take the pointer to
+     */
+    boolean across(int i, int px, int py) {
+        int a = horizontal[i] ? px - originX - x[i] : py - originY - y[i];
+        return a * step[i] > 0;
+    }
+
+    /**
+     * @return how many pieces of boundary the rules were flattened into
+     */
+    int pieces() {
+        return pieceRule.length;
+    }
+
+    /**
+     * @return the rule that piece {@code p} came from
+     */
+    int rule(int p) {
+        return pieceRule[p];
+    }
+
+    /**
+     * @return where on the desktop piece {@code p} starts
+     */
+    int pieceX(int p) {
+        int i = pieceRule[p];
+        return (horizontal[i] ? x[i] : pieceLo[p]) + originX;
+    }
+
+    int pieceY(int p) {
+        int i = pieceRule[p];
+        return (horizontal[i] ? pieceLo[p] : y[i]) + originY;
+    }
+
+    /**
+     * Finds the piece of boundary a pointer moving from ({@code lastX}, {@code lastY}) to
+     * ({@code mx}, {@code my}) is stuck on.
+     *
+     * @return index of the piece, or -1 if there is none
+     */
+    int match(int lastX, int lastY, int mx, int my) {
+        lastX -= originX;
+        lastY -= originY;
+        mx -= originX;
+        my -= originY;
+        int p = match(xStart, lastX, lastY, mx, my);
+        return p >= 0 ? p : match(yStart, lastY, lastX, my, mx);
+    }
+
+    /**
+     * Every piece in the run for {@code a} and the direction moved shares the boundary line and
+     * the way across, and they are sorted and don't overlap, so a binary search finds the one
+     * holding the point where the path crossed into the line, if any does.
+     */
+    private int match(int[] starts, int lastA, int lastB, int a, int b) {
+        int moved = a - lastA;
+        if (moved == 0 || a < 0 || 2 * a + 1 >= starts.length) {
+            return -1;
+        }
+        int key = 2 * a + (moved > 0 ? 1 : 0);
+        int at = crossing(lastA, lastB, a, b);
+        int from = starts[key];
+        int to = starts[key + 1];
+        int end = to;
+        while (from < to) {
+            int mid = (from + to) >>> 1;
+            if (pieceHi[mid] < at) {
+                from = mid + 1;
+            } else {
+                to = mid;
+            }
+        }
+        return from < end && pieceLo[from] <= at ? from : -1;
+    }
+
+    /**
+     * Where along the boundary a pointer that moved in a straight line from ({@code lastA},
+     * {@code lastB}) to ({@code a}, {@code b}) entered the column or row {@code a}: half a pixel
+     * before it, rounded. A fast move only touches the line near where it ends, so a move that
+     * sweeps past a corner's window along {@code b} and lands on the line well away from it has
+     * not crossed there.
+     */
+    static int crossing(int lastA, int lastB, int a, int b) {
+        long d = Math.abs(a - lastA);
+        if (d == 0) {
+            return b;
+        }
+        return lastB + (int) Math.floorDiv((long) (b - lastB) * (2 * d - 1) + d, 2 * d);
+    }
+
+    /**
+     * Writes the three pointer positions that take a pointer that moved from ({@code lastX},
+     * {@code lastY}) to ({@code mx}, {@code my}) across piece {@code p} into {@code path} as
+     * {@code x0, y0, x1, y1, x2, y2}. The pointer is taken across where it entered the line, and
+     * the last position is where it ends up. Pass the same point twice for a pointer that is
+     * already where it should cross.
+     */
+    void path(int p, int lastX, int lastY, int mx, int my, int[] path) {
+        int i = pieceRule[p];
+        lastX -= originX;
+        lastY -= originY;
+        mx -= originX;
+        my -= originY;
+        int a = horizontal[i] ? mx : my;
+        int b = horizontal[i] ? crossing(lastX, lastY, mx, my) : crossing(lastY, lastX, my, mx);
+        int across = a + step[i];
+        int aside = clamp(b + detour[i], spanLo[i], spanHi[i]);
+        put(path, 0, horizontal[i], a, aside);
+        put(path, 2, horizontal[i], across, aside);
+        put(path, 4, horizontal[i], across, b);
+    }
+
+    private void put(int[] path, int offset, boolean horizontal, int a, int b) {
+        path[offset] = (horizontal ? a : b) + originX;
+        path[offset + 1] = (horizontal ? b : a) + originY;
+    }
+
+    static int clamp(int value, int lo, int hi) {
+        return Math.max(lo, Math.min(hi, value));
+    }
+
+    /**
+     * Chebyshev distance from ({@code px}, {@code py}) to the closest piece, or
+     * {@link Integer#MAX_VALUE} if there are none. Runs are visited outwards from the pointer's
+     * own column and row, so only the neighbourhood of the pointer is looked at.
+     */
+    int distance(int px, int py) {
+        return distance(px, py, Integer.MAX_VALUE);
+    }
+
+    /**
+     * The same as {@link #distance(int, int)}, except that the search stops {@code limit} pixels
+     * out: anything at least that far away comes back as {@code limit}. The detector passes the
+     * scheduler's {@link SamplingScheduler#reach}, so a tick only looks as far as matters for its
+     * wait, and not at all while the pointer holds still.
+     */
+    int distance(int px, int py, int limit) {
+        if (limit <= 0) {
+            return 0;
+        }
+        px -= originX;
+        py -= originY;
+        int best = nearest(xKeys, xStart, px, py, limit);
+        return nearest(yKeys, yStart, py, px, best);
+    }
+
+    private int nearest(int[] keys, int[] starts, int a, int b, int best) {
+        int hi = Arrays.binarySearch(keys, a);
+        if (hi < 0) {
+            hi = -hi - 1;
+        }
+        int lo = hi - 1;
+        while (lo >= 0 || hi < keys.length) {
+            int dLo = lo >= 0 ? a - keys[lo] : Integer.MAX_VALUE;
+            int dHi = hi < keys.length ? keys[hi] - a : Integer.MAX_VALUE;
+            if (Math.min(dLo, dHi) >= best) {
+                break;
+            }
+            int k = dLo <= dHi ? keys[lo--] : keys[hi++];
+            int dA = Math.abs(k - a);
+            for (int p = starts[2 * k]; p < starts[2 * k + 2]; p++) {
+                int dB = b < pieceLo[p] ? pieceLo[p] - b : b > pieceHi[p] ? b - pieceHi[p] : 0;
+                best = Math.min(best, Math.max(dA, dB));
+            }
+        }
+        return best;
+    }
+}
@@ -0,0 +1,88 @@
+package com.incognito.tools.stickycorners.detector;
+
+import com.incognito.tools.stickycorners.detector.graphics.Corner;
+import com.incognito.tools.stickycorners.detector.graphics.PointDir;
+
+import java.awt.Color;
+import java.awt.Font;
+import java.awt.FontMetrics;
+import java.awt.Graphics;
+import java.awt.Graphics2D;
+import java.awt.Rectangle;
+import java.awt.image.BufferedImage;
+
+/**
+ * A corner's debug label, outlined and drawn once into an image so repaints only have to copy it.
+ */
+class CornerLabel {
+    private static final int TICK = 5;
+
+    private final int x;
+    private final int y;
+    private final boolean enabled;
+    private final int fontSize;
+    private final BufferedImage image;
+    private final int imageX;
+    private final int imageY;
+
+    /**
+     * Everything this label paints, in window coordinates.
+     */
+    final Rectangle bounds;
+
+    CornerLabel(PointDir.Integer p, Font font, FontMetrics metrics, int fontSize) {
+        this.x = p.x;
+        this.y = p.y;
+        this.enabled = p.enabled;
+        this.fontSize = fontSize;
+
+        String str = p.x + ", " + p.y;
+        int w = metrics.stringWidth(str);
+        int h = metrics.getHeight();
+        int border = fontSize > 28 ? 2 : 1;
+        int textX = p.x + (p.corner == Corner.TL || p.corner == Corner.BL ? 5 : -(w + 5));
+        int textY = p.y + (p.corner == Corner.TL || p.corner == Corner.TR ? (int) (h * 0.65) : -(int) (h * 0.15));
+        imageX = textX - border;
+        imageY = textY - metrics.getAscent() - border;
+
+        image = new BufferedImage(w + border * 2, h + border * 2, BufferedImage.TYPE_INT_ARGB);
+        Graphics2D g = image.createGraphics();
+        g.setFont(font);
+        int baseX = border;
+        int baseY = metrics.getAscent() + border;
+        g.setColor(Color.black);
+        for (int dy = -border; dy < border + 1; dy++) {
+            for (int dx = -border; dx < border + 1; dx++) {
+                if (dx == 0 && dy == 0) continue;
+                g.drawString(str, baseX + dx, baseY + dy);
+            }
+        }
+        g.setColor(color());
+        g.drawString(str, baseX, baseY);
+        g.dispose();
+
+        bounds = new Rectangle(imageX, imageY, image.getWidth(), image.getHeight());
+        bounds.add(new Rectangle(p.x - TICK, p.y - TICK, TICK * 2 + 1, TICK * 2 + 1));
+    }
+
+    /**
+     * @return whether this label still shows {@code p} as it is now
+     */
+    boolean matches(PointDir.Integer p, int fontSize) {
+        return p.x == x && p.y == y && p.enabled == enabled && this.fontSize == fontSize;
+    }
+
+    void paint(Graphics g, PointDir.Integer p) {
+        g.drawImage(image, imageX, imageY, null);
+        g.setColor(color());
+        if (p.direction.isHorizontalBoundary()) {
+            g.drawLine(p.x, p.y, p.x, p.y + (p.corner == Corner.TL || p.corner == Corner.TR ? TICK : -TICK));
+        } else {
+            g.drawLine(p.x, p.y, p.x + (p.corner == Corner.TL || p.corner == Corner.BL ? TICK : -TICK), p.y);
+        }
+    }
+
+    private Color color() {
+        return enabled ? Color.green : Color.red;
+    }
+}
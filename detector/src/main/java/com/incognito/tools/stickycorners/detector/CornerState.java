@@ -0,0 +1,134 @@
+package com.incognito.tools.stickycorners.detector;
+
+import com.incognito.tools.stickycorners.detector.graphics.Barrier;
+import com.incognito.tools.stickycorners.detector.graphics.PointDir;
+
+import java.awt.Rectangle;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Everything the detector knows about the current layout's corners, frozen: the screens, their
+ * corners and the barriers along their shared edges relative to the top left of the desktop, and
+ * the {@link CornerIndex} compiled from them.
+ * <p>
+ * The detector publishes a state through a single volatile reference, and anything that changes,
+ * a new layout, a corner switched on or off or barriers edited, builds a new state and swaps it in. Readers take
+ * the reference once and see one consistent layout for as long as they hold it, without locking.
+ * The lists are unmodifiable, and the corners in them must not be changed once published; use
+ * {@link #withEnabled} instead.
+ */
+final class CornerState {
+    static final CornerState EMPTY = new CornerState(Collections.emptyList(), Collections.emptyMap(),
+            Collections.emptyList(), new Rectangle(), "");
+
+    final List<Rectangle> screens;
+    final Map<Rectangle, List<PointDir.Integer>> byScreen;
+    final List<PointDir.Integer> corners;
+    final List<Barrier> barriers;
+    final CornerIndex index;
+    final String fingerprint;
+
+    CornerState(List<Rectangle> screens, Map<Rectangle, List<PointDir.Integer>> byScreen, List<Barrier> barriers,
+                Rectangle bounds, String fingerprint) {
+        this(screens, byScreen, barriers, bounds, CornerIndex.WINDOW, CornerIndex.DETOUR, fingerprint);
+    }
+
+    /**
+     * @param byScreen corners of each screen, relative to the top left of {@code bounds}
+     * @param barriers relative to the top left of {@code bounds}
+     * @param window   how far each corner's window reaches, as {@link CornerIndex} describes
+     * @param detour   how far the pointer is taken into the screen crossing at a corner
+     */
+    CornerState(List<Rectangle> screens, Map<Rectangle, List<PointDir.Integer>> byScreen, List<Barrier> barriers,
+                Rectangle bounds, int window, int detour, String fingerprint) {
+        this(screens, byScreen, barriers, null, bounds, window, detour, fingerprint);
+    }
+
+    private CornerState(List<Rectangle> screens, Map<Rectangle, List<PointDir.Integer>> byScreen,
+                        List<Barrier> barriers, CornerIndex index, Rectangle bounds, int window, int detour,
+                        String fingerprint) {
+        this.screens = Collections.unmodifiableList(new ArrayList<>(screens));
+        Map<Rectangle, List<PointDir.Integer>> copy = new LinkedHashMap<>();
+        List<PointDir.Integer> all = new ArrayList<>();
+        for (Map.Entry<Rectangle, List<PointDir.Integer>> e : byScreen.entrySet()) {
+            copy.put(e.getKey(), Collections.unmodifiableList(new ArrayList<>(e.getValue())));
+            all.addAll(e.getValue());
+        }
+        this.byScreen = Collections.unmodifiableMap(copy);
+        this.corners = Collections.unmodifiableList(all);
+        this.barriers = Collections.unmodifiableList(new ArrayList<>(barriers));
+        this.index = index != null ? index : new CornerIndex(all, this.barriers, bounds, window, detour);
+        this.fingerprint = fingerprint;
+    }
+
+    /**
+     * @return a state where {@code corner}, if it's one of this state's, is replaced by a copy
+     * enabled or disabled as asked, or this state if it isn't
+     */
+    CornerState withEnabled(PointDir.Integer corner, boolean enabled) {
+        PointDir.Integer replacement = new PointDir.Integer(corner.x, corner.y, corner.direction, corner.corner, enabled);
+        Map<Rectangle, List<PointDir.Integer>> next = new LinkedHashMap<>();
+        boolean found = false;
+        for (Map.Entry<Rectangle, List<PointDir.Integer>> e : byScreen.entrySet()) {
+            List<PointDir.Integer> list = e.getValue();
+            int i = indexOf(list, corner);
+            if (i >= 0) {
+                list = new ArrayList<>(list);
+                list.set(i, replacement);
+                found = true;
+            }
+            next.put(e.getKey(), list);
+        }
+        if (!found) {
+            return this;
+        }
+        return new CornerState(screens, next, barriers, index.withEnabled(corner, replacement), bounds(),
+                index.window, index.cornerDetour, fingerprint);
+    }
+
+    /**
+     * @param barriers relative to the top left of the desktop
+     * @return a state with the same corners and {@code barriers} in place of this one's
+     */
+    CornerState withBarriers(List<Barrier> barriers) {
+        return new CornerState(screens, byScreen, barriers, bounds(), index.window, index.cornerDetour, fingerprint);
+    }
+
+    /**
+     * @return a state with the same corners and barriers, compiled with corner windows and
+     * detours of the sizes given
+     */
+    CornerState withCapture(int window, int detour) {
+        return new CornerState(screens, byScreen, barriers, bounds(), window, detour, fingerprint);
+    }
+
+    Rectangle bounds() {
+        return new Rectangle(index.originX, index.originY, index.width, index.height);
+    }
+
+    /**
+     * @return the corner in this state at the same place as {@code corner}, which may be from an
+     * older state, or null if there is none
+     */
+    PointDir.Integer find(PointDir.Integer corner) {
+        for (PointDir.Integer p : corners) {
+            if (p == corner || p.x == corner.x && p.y == corner.y && p.direction == corner.direction && p.corner == corner.corner) {
+                return p;
+            }
+        }
+        return null;
+    }
+
+    private static int indexOf(List<PointDir.Integer> list, PointDir.Integer corner) {
+        for (int i = 0; i < list.size(); i++) {
+            if (list.get(i) == corner) {
+                return i;
+            }
+        }
+        return -1;
+    }
+}
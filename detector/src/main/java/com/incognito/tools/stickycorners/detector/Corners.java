@@ -0,0 +1,211 @@
+package com.incognito.tools.stickycorners.detector;
+
+import com.incognito.tools.stickycorners.detector.graphics.Barrier;
+import com.incognito.tools.stickycorners.detector.graphics.Corner;
+import com.incognito.tools.stickycorners.detector.graphics.Direction;
+import com.incognito.tools.stickycorners.detector.graphics.PointDir;
+
+import java.awt.Rectangle;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Works out which screen corners the pointer can get stuck on.
+ * <p>
+ * A corner counts if another screen shares the edge it sits on at that point: the screen to the
+ * left or right for a corner on a horizontal boundary, above or below for one on a vertical
+ * boundary. Screen edges are grouped by the line they lie on and merged into sorted, disjoint
+ * spans, so each corner costs one hash lookup and one binary search.
+ */
+final class Corners {
+    private final Edges lefts = new Edges();
+    private final Edges rights = new Edges();
+    private final Edges tops = new Edges();
+    private final Edges bottoms = new Edges();
+
+    Corners(List<Rectangle> screens) {
+        for (Rectangle r : screens) {
+            lefts.add(r.x, r.y, r.y + r.height);
+            rights.add(r.x + r.width, r.y, r.y + r.height);
+            tops.add(r.y, r.x, r.x + r.width);
+            bottoms.add(r.y + r.height, r.x, r.x + r.width);
+        }
+        lefts.merge();
+        rights.merge();
+        tops.merge();
+        bottoms.merge();
+    }
+
+    /**
+     * @return every corner of {@code screens} that borders another screen, in desktop coordinates
+     */
+    static List<PointDir.Integer> find(List<Rectangle> screens) {
+        Corners finder = new Corners(screens);
+        List<PointDir.Integer> corners = new ArrayList<>();
+        for (Rectangle r : screens) {
+            corners.addAll(finder.of(r));
+        }
+        return corners;
+    }
+
+    /**
+     * @return the corners of {@code r}, one of the screens this was built from, that border
+     * another screen, in desktop coordinates
+     */
+    List<PointDir.Integer> of(Rectangle r) {
+        List<PointDir.Integer> corners = new ArrayList<>();
+        int left = r.x;
+        int top = r.y;
+        int right = r.x + r.width - 1;
+        int bottom = r.y + r.height - 1;
+        if (bottoms.contains(top, left)) {
+            corners.add(new PointDir.Integer(left, top, Direction.RIGHT, Corner.TL));
+        }
+        if (rights.contains(left, top)) {
+            corners.add(new PointDir.Integer(left, top, Direction.DOWN, Corner.TL));
+        }
+        if (rights.contains(left, bottom)) {
+            corners.add(new PointDir.Integer(left, bottom, Direction.UP, Corner.BL));
+        }
+        if (tops.contains(bottom + 1, left)) {
+            corners.add(new PointDir.Integer(left, bottom, Direction.RIGHT, Corner.BL));
+        }
+        if (lefts.contains(right + 1, top)) {
+            corners.add(new PointDir.Integer(right, top, Direction.DOWN, Corner.TR));
+        }
+        if (bottoms.contains(top, right)) {
+            corners.add(new PointDir.Integer(right, top, Direction.LEFT, Corner.TR));
+        }
+        if (lefts.contains(right + 1, bottom)) {
+            corners.add(new PointDir.Integer(right, bottom, Direction.UP, Corner.BR));
+        }
+        if (tops.contains(bottom + 1, right)) {
+            corners.add(new PointDir.Integer(right, bottom, Direction.LEFT, Corner.BR));
+        }
+        return corners;
+    }
+
+    /**
+     * Every stretch of boundary the pointer can cross between two of the screens this was built
+     * from, once for each way across, as pass-through barriers covering the whole stretch, in
+     * desktop coordinates. It is wherever the right edges on a line meet the left edges on it, or
+     * the bottom edges the top ones; barriers on one line come out sorted and apart.
+     */
+    List<Barrier> edges() {
+        List<Barrier> edges = new ArrayList<>();
+        meet(rights, lefts, Direction.RIGHT, Direction.LEFT, edges);
+        meet(bottoms, tops, Direction.DOWN, Direction.UP, edges);
+        return edges;
+    }
+
+    /**
+     * Adds a barrier each way across every stretch where one of {@code ends} meets one of
+     * {@code starts} on the same line, walking the two sorted lists of spans side by side.
+     */
+    private static void meet(Edges ends, Edges starts, Direction across, Direction back, List<Barrier> edges) {
+        for (int line : ends.lines()) {
+            int[] before = ends.spans(line);
+            int[] after = starts.spans(line);
+            if (after == null) {
+                continue;
+            }
+            for (int i = 0, j = 0; i < before.length && j < after.length; ) {
+                int from = Math.max(before[i], after[j]);
+                int to = Math.min(before[i + 1], after[j + 1]);
+                if (from < to) {
+                    edges.add(new Barrier(line - 1, from, to - 1, across, false));
+                    edges.add(new Barrier(line, from, to - 1, back, false));
+                }
+                if (before[i + 1] < after[j + 1]) {
+                    i += 2;
+                } else {
+                    j += 2;
+                }
+            }
+        }
+    }
+
+    /**
+     * Screen edges keyed by the line they lie on, each line holding the spans {@code [from, to)}
+     * covered by screens along it.
+     */
+    private static class Edges {
+        private final Map<Integer, List<int[]>> building = new HashMap<>();
+        private final Map<Integer, int[]> lines = new HashMap<>();
+
+        void add(int line, int from, int to) {
+            building.computeIfAbsent(line, k -> new ArrayList<>()).add(new int[]{from, to});
+        }
+
+        /**
+         * Sorts each line's spans and joins the ones that touch or overlap, packing them as
+         * {@code from0, to0, from1, to1, ...}.
+         */
+        void merge() {
+            for (Map.Entry<Integer, List<int[]>> e : building.entrySet()) {
+                List<int[]> spans = e.getValue();
+                spans.sort(Comparator.comparingInt(s -> s[0]));
+                int[] packed = new int[spans.size() * 2];
+                int n = 0;
+                for (int[] s : spans) {
+                    if (n > 0 && s[0] <= packed[n - 1]) {
+                        packed[n - 1] = Math.max(packed[n - 1], s[1]);
+                    } else {
+                        packed[n++] = s[0];
+                        packed[n++] = s[1];
+                    }
+                }
+                lines.put(e.getKey(), Arrays.copyOf(packed, n));
+            }
+            building.clear();
+        }
+
+        /**
+         * @return the lines with any edges on them, in order
+         */
+        int[] lines() {
+            int[] keys = new int[lines.size()];
+            int n = 0;
+            for (int line : lines.keySet()) {
+                keys[n++] = line;
+            }
+            Arrays.sort(keys);
+            return keys;
+        }
+
+        /**
+         * @return the merged spans on {@code line}, packed as {@code from0, to0, from1, to1, ...},
+         * or null if it has none
+         */
+        int[] spans(int line) {
+            return lines.get(line);
+        }
+
+        /**
+         * @return whether a screen edge on {@code line} covers {@code position}
+         */
+        boolean contains(int line, int position) {
+            int[] spans = lines.get(line);
+            if (spans == null) {
+                return false;
+            }
+            int lo = 0;
+            int hi = spans.length / 2 - 1;
+            while (lo <= hi) {
+                int mid = (lo + hi) >>> 1;
+                if (position < spans[mid * 2]) {
+                    hi = mid - 1;
+                } else if (position >= spans[mid * 2 + 1]) {
+                    lo = mid + 1;
+                } else {
+                    return true;
+                }
+            }
+            return false;
+        }
+    }
+}
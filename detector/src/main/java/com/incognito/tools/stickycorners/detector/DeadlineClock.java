@@ -0,0 +1,78 @@
+package com.incognito.tools.stickycorners.detector;
+
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Paces the sampling thread against absolute {@link System#nanoTime} deadlines instead of
+ * sleeping for a fixed time after each tick, so neither the cost of a tick nor waking up late
+ * pushes the schedule back.
+ * <p>
+ * Each deadline is the previous one plus the requested delay. Waking up late therefore makes the
+ * next wait shorter. If a whole delay has already gone by when the next wait starts, the schedule
+ * starts over from now instead of firing a burst of ticks to catch up. Waits are parked, never
+ * spun, and reported to {@link DetectorMetrics} as periods and jitter.
+ */
+class DeadlineClock {
+    private final DetectorMetrics metrics;
+    private long deadline;
+    private long lastWake;
+
+    DeadlineClock(DetectorMetrics metrics) {
+        this.metrics = metrics;
+        this.deadline = System.nanoTime();
+        this.lastWake = deadline;
+        HighResolutionTimer.request();
+    }
+
+    /**
+     * Parks until {@code delayNanos} after the last deadline.
+     *
+     * @return {@link System#nanoTime} on waking
+     */
+    long await(long delayNanos) throws InterruptedException {
+        long next = deadline + delayNanos;
+        long now = System.nanoTime();
+        if (now - next >= delayNanos) {
+            metrics.recordLateWake();
+            next = now;
+        }
+        long remaining;
+        while ((remaining = next - System.nanoTime()) > 0) {
+            LockSupport.parkNanos(this, remaining);
+            if (Thread.interrupted()) {
+                throw new InterruptedException();
+            }
+        }
+        long woke = System.nanoTime();
+        metrics.recordJitter(woke - next);
+        metrics.recordPeriod(woke - lastWake);
+        deadline = next;
+        lastWake = woke;
+        return woke;
+    }
+
+    /**
+     * On Windows the JVM only raises the system timer resolution to 1 ms while some thread sleeps
+     * for a time that isn't a multiple of 10 ms; otherwise short parks get rounded up to the
+     * 15.6 ms system tick. A daemon thread sleeping for ever keeps it raised. Elsewhere it isn't
+     * needed and isn't started.
+     */
+    private static class HighResolutionTimer {
+        private static boolean started;
+
+        static synchronized void request() {
+            if (started || !System.getProperty("os.name", "").startsWith("Windows")) {
+                return;
+            }
+            started = true;
+            Thread t = new Thread(() -> {
+                try {
+                    Thread.sleep(Long.MAX_VALUE);
+                } catch (InterruptedException ignored) {
+                }
+            }, "high-resolution-timer");
+            t.setDaemon(true);
+            t.start();
+        }
+    }
+}
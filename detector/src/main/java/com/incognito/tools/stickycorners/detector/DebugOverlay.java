@@ -0,0 +1,83 @@
+package com.incognito.tools.stickycorners.detector;
+
+import com.incognito.tools.stickycorners.detector.graphics.PointDir;
+
+import javax.swing.JWindow;
+import java.awt.Color;
+import java.awt.Font;
+import java.awt.Graphics;
+import java.awt.Rectangle;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * The transparent window debug mode draws each corner's coordinates on. The detector only creates
+ * it the first time debug mode is switched on, so a detector that never shows it never loads it.
+ */
+class DebugOverlay extends JWindow {
+    private final Detector detector;
+    private final Map<PointDir.Integer, CornerLabel> labels = new IdentityHashMap<>();
+    private List<PointDir.Integer> labelsFor;
+
+    DebugOverlay(Detector detector) {
+        this.detector = detector;
+        setBackground(new Color(0, true));
+        setAlwaysOnTop(true);
+        setLayout(null);
+    }
+
+    /**
+     * Covers every screen of the layout {@code index} was built for.
+     */
+    void fit(CornerIndex index) {
+        setSize(index.width, index.height);
+        setLocation(index.originX, index.originY);
+    }
+
+    /**
+     * Labels are drawn from {@link #labels}, re-rendering only those whose corner, enabled state
+     * or font size changed, and only where the graphics clip asks for it.
+     */
+    @Override
+    public void paint(Graphics g) {
+        super.paint(g);
+        List<PointDir.Integer> corners = detector.getCorners();
+        int fontSize = detector.getDebugFontSize();
+        if (labelsFor != corners) {
+            Set<PointDir.Integer> kept = Collections.newSetFromMap(new IdentityHashMap<>());
+            kept.addAll(corners);
+            labels.keySet().retainAll(kept);
+            labelsFor = corners;
+        }
+        Rectangle clip = g.getClipBounds();
+        Font font = null;
+        for (PointDir.Integer p : corners) {
+            CornerLabel label = labels.get(p);
+            if (label == null || !label.matches(p, fontSize)) {
+                if (font == null) {
+                    font = g.getFont().deriveFont(g.getFont().getStyle(), fontSize);
+                }
+                label = new CornerLabel(p, font, g.getFontMetrics(font), fontSize);
+                labels.put(p, label);
+            }
+            if (clip == null || clip.intersects(label.bounds)) {
+                label.paint(g, p);
+            }
+        }
+    }
+
+    /**
+     * Repaints just the area around one corner's label, after it was enabled or disabled.
+     */
+    void repaintCorner(PointDir.Integer p) {
+        CornerLabel label = labels.get(p);
+        if (label == null) {
+            repaint();
+        } else {
+            repaint(label.bounds.x, label.bounds.y, label.bounds.width, label.bounds.height);
+        }
+    }
+}
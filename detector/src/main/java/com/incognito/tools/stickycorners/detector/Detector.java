@@ -1,83 +1,68 @@
 package com.incognito.tools.stickycorners.detector;
 
-import com.incognito.tools.stickycorners.detector.graphics.Direction;
+import com.incognito.tools.stickycorners.detector.graphics.Barrier;
 import com.incognito.tools.stickycorners.detector.graphics.PointDir;
-import com.incognito.tools.stickycorners.detector.graphics.Corner;
-
-import javax.swing.JWindow;
-import java.awt.AWTException;
-import java.awt.Color;
-import java.awt.Graphics;
-import java.awt.MouseInfo;
-import java.awt.Point;
-import java.awt.PointerInfo;
+
 import java.awt.Rectangle;
 import java.awt.Robot;
-import java.awt.geom.Rectangle2D;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Logger;
 
 /**
  * Created by jahorton on 9/13/2018
  */
-public class Detector extends JWindow {
-    private List<PointDir.Integer> corners = new ArrayList<>();
-    private List<Rectangle> screens = new ArrayList<>();
+public class Detector {
+    private static Logger log = Logger.getLogger("Detector");
 
-    private Point min = new Point();
+    private volatile CornerState state = CornerState.EMPTY;
+    private SamplingScheduler scheduler;
+    private final Profiles profiles;
+    private DetectorMetrics metrics;
 
-    private Robot robot;
-    private Point lastMouse;
+    private DetectorEngine engine;
+    private volatile boolean calibrate;
+    private int window;
+    private int detour;
 
     private int debugFontSize = 10;
+    private volatile DebugOverlay overlay;
 
-    Detector(Rectangle[] screenBounds, boolean debug) {
-        setBackground(new Color(0, true));
-        setAlwaysOnTop(true);
-        setLayout(null);
-        Rectangle bounds = new Rectangle();
-        for (Rectangle r : screenBounds) {
-            Rectangle.union(bounds, r, bounds);
-            screens.add(r);
-            corners.add(new PointDir.Integer(r.x, r.y, Direction.RIGHT, Corner.TL));
-            corners.add(new PointDir.Integer(r.x, r.y, Direction.DOWN, Corner.TL));
-            corners.add(new PointDir.Integer(r.x, r.y + r.height - 1, Direction.UP, Corner.BL));
-            corners.add(new PointDir.Integer(r.x, r.y + r.height - 1, Direction.RIGHT, Corner.BL));
-            corners.add(new PointDir.Integer(r.x + r.width - 1, r.y, Direction.DOWN, Corner.TR));
-            corners.add(new PointDir.Integer(r.x + r.width - 1, r.y, Direction.LEFT, Corner.TR));
-            corners.add(new PointDir.Integer(r.x + r.width - 1, r.y + r.height - 1, Direction.UP, Corner.BR));
-            corners.add(new PointDir.Integer(r.x + r.width - 1, r.y + r.height - 1, Direction.LEFT, Corner.BR));
-            min.x = Math.min(min.x, r.x);
-            min.y = Math.min(min.y, r.y);
-            Point max = new Point();
-            max.x = Math.max(max.x, r.x + r.width);
-            max.y = Math.max(max.y, r.y + r.height);
-        }
+    /**
+     * @param robot  moves the pointer; without one the detector keeps track of the layout but
+     *               never starts sampling
+     * @param trace  where to record pointer samples, or null to not record them
+     * @param warp   how to move the pointer across corners, or null to pick the fastest way that
+     *               works here once the detector starts
+     * @param window how many pixels into the screen each corner's window reaches, as for
+     *               {@link #setCapture}
+     * @param detour how many pixels each corner's detour is, as for {@link #setCapture}
+     */
+    Detector(Rectangle[] screenBounds, boolean debug, Robot robot, SamplingScheduler scheduler, Profiles profiles,
+             DetectorMetrics metrics, PointerTrace trace, WarpStrategy warp, int window, int detour) {
+        this.scheduler = scheduler;
+        this.profiles = profiles;
+        this.metrics = metrics;
+        this.window = window;
+        this.detour = detour;
+        layout(Arrays.asList(screenBounds), Collections.emptyList());
 
-        corners.removeIf(p -> {
-            boolean contained = false;
-            for (Rectangle2D r : screens) {
-                if (!r.contains(p.x, p.y)) {
-                    contained |= p.direction.isHorizontalBoundary()
-                            ? r.contains(p.x - 5.0, p.y) || r.contains(p.x + 5.0, p.y)
-                            : r.contains(p.x, p.y - 5.0) || r.contains(p.x, p.y + 5.0);
-                }
+        if (robot != null) {
+            engine = new DetectorEngine(new MousePointerSource(), new RobotPointerActuator(robot),
+                    scheduler, metrics, trace);
+            if (warp != null) {
+                engine.setWarpStrategy(warp);
             }
-            return !contained;
-        });
-
-        for (PointDir.Integer p : corners) {
-            p.x -= min.x;
-            p.y -= min.y;
-        }
-        setSize((int) bounds.getWidth(), (int) bounds.getHeight());
-        setLocation((int) bounds.getX(), (int) bounds.getY());
-
-        try {
-            robot = new Robot();
+            calibrate = warp == null;
             thread.start();
-        } catch (AWTException e) {
-            e.printStackTrace();
         }
 
         if (debug) {
@@ -85,34 +70,41 @@ public class Detector extends JWindow {
         }
     }
 
-    @Override
-    public void paint(Graphics g) {
-        super.paint(g);
-        g.setFont(g.getFont().deriveFont(g.getFont().getStyle(), debugFontSize));
-        for (PointDir.Integer p : corners) {
-            String str = p.x + ", " + p.y;
-            int w = g.getFontMetrics().stringWidth(str);
-            int h = g.getFontMetrics().getHeight();
-            Point t = new Point(p.x + (p.corner == Corner.TL || p.corner == Corner.BL ? 5 : -(w + 5)), p.y + (p.corner == Corner.TL || p.corner == Corner.TR ? (int) (h * 0.65) : -(int) (h * 0.15)));
-            g.setColor(Color.black);
-            int borderScale = 1;
-            if (debugFontSize > 28) {
-                borderScale = 2;
-            }
-            for (int y = -borderScale; y < borderScale + 1; y++) {
-                for (int x = -borderScale; x < borderScale + 1; x++) {
-                    if (x == 0 && y == 0) continue;
-                    g.drawString(str, t.x + x, t.y + y);
-                }
+    /**
+     * Shows or hides the debug overlay, creating it the first time it's shown.
+     */
+    public synchronized void setVisible(boolean visible) {
+        DebugOverlay overlay = this.overlay;
+        if (overlay == null) {
+            if (!visible) {
+                return;
             }
-            g.setColor(p.enabled ? Color.green : Color.red);
-            g.drawString(str, t.x, t.y);
+            overlay = new DebugOverlay(this);
+            overlay.fit(state.index);
+            this.overlay = overlay;
+        }
+        overlay.setVisible(visible);
+    }
 
-            if (p.direction.isHorizontalBoundary()) {
-                g.drawLine(p.x, p.y, p.x, p.y + (p.corner == Corner.TL || p.corner == Corner.TR ? 5 : -5));
-            } else {
-                g.drawLine(p.x, p.y, p.x + (p.corner == Corner.TL || p.corner == Corner.BL ? 5 : -5), p.y);
-            }
+    public boolean isVisible() {
+        DebugOverlay overlay = this.overlay;
+        return overlay != null && overlay.isVisible();
+    }
+
+    public void repaint() {
+        DebugOverlay overlay = this.overlay;
+        if (overlay != null) {
+            overlay.repaint();
+        }
+    }
+
+    /**
+     * Repaints just the area around one corner's label, after it was enabled or disabled.
+     */
+    public void repaintCorner(PointDir.Integer p) {
+        DebugOverlay overlay = this.overlay;
+        if (overlay != null) {
+            overlay.repaintCorner(p);
         }
     }
 
@@ -124,137 +116,292 @@ public class Detector extends JWindow {
         } catch (InterruptedException e) {
             Thread.currentThread().interrupt();
         }
-        corners.clear();
-        screens.clear();
-        min = null;
-        lastMouse = null;
-        robot = null;
+        state = CornerState.EMPTY;
+        engine = null;
+        if (overlay != null) {
+            overlay.dispose();
+        }
+    }
+
+    /**
+     * Moves the detector onto a new screen layout without stopping it. A layout seen before is
+     * restored from its profile. Otherwise only the corners of screens that were added, removed
+     * or moved, and of the screens touching them, are worked out again; everything else,
+     * including whether each corner is enabled, is kept as it was.
+     *
+     * @return whether the layout was different
+     */
+    synchronized boolean update(Rectangle[] screenBounds) {
+        List<Rectangle> next = Arrays.asList(screenBounds);
+        List<Rectangle> screens = state.screens;
+        if (next.equals(screens)) {
+            return false;
+        }
+        Set<Rectangle> before = new HashSet<>(screens);
+        Set<Rectangle> after = new HashSet<>(next);
+        List<Rectangle> changed = new ArrayList<>();
+        for (Rectangle r : screens) {
+            if (!after.contains(r)) {
+                changed.add(r);
+            }
+        }
+        for (Rectangle r : next) {
+            if (!before.contains(r)) {
+                changed.add(r);
+            }
+        }
+        layout(next, changed);
+        return true;
+    }
+
+    private void layout(List<Rectangle> next, Collection<Rectangle> changed) {
+        Rectangle bounds = new Rectangle();
+        for (Rectangle r : next) {
+            Rectangle.union(bounds, r, bounds);
+        }
+        CornerState previous = state;
+        Map<Rectangle, List<PointDir.Integer>> cornersByScreen = previous.byScreen;
+        int dx = previous.index.originX - bounds.x;
+        int dy = previous.index.originY - bounds.y;
+
+        String nextFingerprint = Profiles.fingerprint(next);
+        Map<Rectangle, List<PointDir.Integer>> saved = profiles.get(nextFingerprint);
+        Corners finder = null;
+        Map<Rectangle, List<PointDir.Integer>> byScreen = new LinkedHashMap<>();
+        int rebuilt = 0;
+        for (Rectangle r : next) {
+            if (byScreen.containsKey(r)) {
+                continue;
+            }
+            if (saved != null && saved.containsKey(r)) {
+                List<PointDir.Integer> mine = saved.get(r);
+                for (PointDir.Integer p : mine) {
+                    p.x -= bounds.x;
+                    p.y -= bounds.y;
+                }
+                byScreen.put(r, mine);
+                continue;
+            }
+            if (finder == null) {
+                finder = new Corners(next);
+            }
+            List<PointDir.Integer> old = new ArrayList<>();
+            for (PointDir.Integer p : cornersByScreen.getOrDefault(r, Collections.emptyList())) {
+                old.add(new PointDir.Integer(p.x + dx, p.y + dy, p.direction, p.corner, p.enabled));
+            }
+            List<PointDir.Integer> mine;
+            if (cornersByScreen.containsKey(r) && !touches(r, changed)) {
+                mine = old;
+            } else {
+                mine = finder.of(r);
+                for (PointDir.Integer p : mine) {
+                    p.x -= bounds.x;
+                    p.y -= bounds.y;
+                    for (PointDir.Integer o : old) {
+                        if (o.x == p.x && o.y == p.y && o.direction == p.direction && o.corner == p.corner) {
+                            p.enabled = o.enabled;
+                        }
+                    }
+                }
+                rebuilt++;
+            }
+            byScreen.put(r, mine);
+        }
+
+        List<Barrier> barriers = profiles.getBarriers(nextFingerprint);
+        if (barriers == null) {
+            barriers = new ArrayList<>();
+            for (Barrier b : previous.barriers) {
+                barriers.add(b.translate(dx, dy));
+            }
+            barriers = Barrier.clip(barriers, edges(next, bounds));
+        } else {
+            barriers.replaceAll(b -> b.translate(-bounds.x, -bounds.y));
+        }
+
+        CornerState built = new CornerState(next, byScreen, barriers, bounds, window, detour, nextFingerprint);
+        state = built;
+        metrics.setCorners(built.index);
+        if (overlay != null) {
+            overlay.fit(built.index);
+        }
+        if (saved == null || rebuilt > 0) {
+            profiles.put(built.fingerprint, built.byScreen, built.barriers, bounds.x, bounds.y);
+        }
+        int worked = rebuilt;
+        log.fine(() -> "Corners worked out for " + worked + " of " + byScreen.size() + " screens.");
+    }
+
+    /**
+     * @return every stretch of boundary between two of {@code screens}, relative to the top left
+     * of {@code bounds}
+     */
+    private static List<Barrier> edges(List<Rectangle> screens, Rectangle bounds) {
+        List<Barrier> edges = new Corners(screens).edges();
+        edges.replaceAll(b -> b.translate(-bounds.x, -bounds.y));
+        return edges;
+    }
+
+    private static boolean touches(Rectangle r, Collection<Rectangle> others) {
+        for (Rectangle o : others) {
+            if (r.intersects(new Rectangle(o.x - 1, o.y - 1, o.width + 2, o.height + 2))) {
+                return true;
+            }
+        }
+        return false;
     }
 
     private Thread thread = new Thread(() -> {
-        System.out.println("Detector started.");
+        log.info("Detector started.");
+        DeadlineClock clock = new DeadlineClock(metrics);
+        long delay = scheduler.getMinInterval();
+        boolean protecting = false;
         while (true) {
             if (Thread.currentThread().isInterrupted()) {
                 break;
             }
+            if (calibrate) {
+                calibrate = false;
+                engine.calibrate(state.index);
+            }
+            long start;
             try {
-                Thread.sleep(50);
+                start = clock.await(TimeUnit.MILLISECONDS.toNanos(delay));
             } catch (InterruptedException e) {
                 Thread.currentThread().interrupt();
                 break;
             }
-            PointerInfo pi = MouseInfo.getPointerInfo();
-            if (pi == null) {
-                continue;
+            delay = engine.tick(state.index, start);
+            if (!protecting) {
+                metrics.recordFirstTick();
+                protecting = true;
             }
-            Point m = pi.getLocation();
-            m.x -= min.x;
-            m.y -= min.y;
-            if (lastMouse != null && (m.x != lastMouse.x || m.y != lastMouse.y)) {
-                boolean moved = false;
-                for (PointDir.Integer p : corners) {
-                    if (!p.enabled){
-                        continue;
-                    }
-                    switch (p.corner) {
-                        case TL:
-                            if (p.direction.isHorizontalBoundary() && m.x == p.x && m.y >= p.y && m.y <= p.y + 5 && lastMouse.x > m.x) {
-                                m.x += min.x;
-                                m.y += min.y;
-                                robot.mouseMove(m.x, m.y + 10);
-                                robot.mouseMove(m.x - 1, m.y + 10);
-                                robot.mouseMove(m.x - 1, m.y);
-                                m.x--;
-                                moved = true;
-                            } else if (p.direction.isVerticalBoundary() && m.y == p.y && m.x >= p.x && m.x <= p.x + 5 && lastMouse.y > m.y) {
-                                m.x += min.x;
-                                m.y += min.y;
-                                robot.mouseMove(m.x + 10, m.y);
-                                robot.mouseMove(m.x + 10, m.y - 1);
-                                robot.mouseMove(m.x, m.y - 1);
-                                m.y--;
-                                moved = true;
-                            }
-                            break;
-                        case TR:
-                            if (p.direction.isHorizontalBoundary() && m.x == p.x && m.y >= p.y && m.y <= p.y + 5 && lastMouse.x < m.x) {
-                                m.x += min.x;
-                                m.y += min.y;
-                                robot.mouseMove(m.x, m.y + 10);
-                                robot.mouseMove(m.x + 1, m.y + 10);
-                                robot.mouseMove(m.x + 1, m.y);
-                                m.x++;
-                                moved = true;
-                            } else if (p.direction.isVerticalBoundary() && m.y == p.y && m.x <= p.x && m.x >= p.x - 5 && lastMouse.y > m.y) {
-                                m.x += min.x;
-                                m.y += min.y;
-                                robot.mouseMove(m.x - 10, m.y);
-                                robot.mouseMove(m.x - 10, m.y - 1);
-                                robot.mouseMove(m.x, m.y - 1);
-                                m.y++;
-                                moved = true;
-                            }
-                            break;
-                        case BL:
-                            if (p.direction.isHorizontalBoundary() && m.x == p.x && m.y <= p.y && m.y >= p.y - 5 && lastMouse.x > m.x) {
-                                m.x += min.x;
-                                m.y += min.y;
-                                robot.mouseMove(m.x, m.y - 10);
-                                robot.mouseMove(m.x - 1, m.y - 10);
-                                robot.mouseMove(m.x - 1, m.y);
-                                m.x--;
-                                moved = true;
-                            } else if (p.direction.isVerticalBoundary() && m.y == p.y && m.x >= p.x && m.x <= p.x + 5 && lastMouse.y < m.y) {
-                                m.x += min.x;
-                                m.y += min.y;
-                                robot.mouseMove(m.x + 10, m.y);
-                                robot.mouseMove(m.x + 10, m.y + 1);
-                                robot.mouseMove(m.x, m.y + 1);
-                                m.y--;
-                                moved = true;
-                            }
-                            break;
-                        case BR:
-                            if (p.direction.isHorizontalBoundary() && m.x == p.x && m.y <= p.y && m.y >= p.y - 5 && lastMouse.x < m.x) {
-                                m.x += min.x;
-                                m.y += min.y;
-                                robot.mouseMove(m.x, m.y - 10);
-                                robot.mouseMove(m.x + 1, m.y - 10);
-                                robot.mouseMove(m.x + 1, m.y);
-                                m.x++;
-                                moved = true;
-                            } else if (p.direction.isVerticalBoundary() && m.y == p.y && m.x < p.x && m.x > p.x - 5 && lastMouse.y < m.y) {
-                                m.x += min.x;
-                                m.y += min.y;
-                                robot.mouseMove(m.x - 10, m.y);
-                                robot.mouseMove(m.x - 10, m.y + 1);
-                                robot.mouseMove(m.x, m.y + 1);
-                                m.y--;
-                                moved = true;
-                            }
-                            break;
-                    }
-                    if (moved) {
-                        m.x -= min.x;
-                        m.y -= min.y;
-                        break;
-                    }
-                }
-            }
-            lastMouse = m;
         }
-        System.out.println("Detector stopped.");
+        log.info("Detector stopped.");
         if (isVisible()) {
             setVisible(false);
         }
     });
 
+    /**
+     * Enables or disables a corner by publishing a new state with it replaced, so the sampling
+     * thread sees either the old corners or the new ones and never anything in between.
+     *
+     * @param layout the {@link #getLayout} that {@code corner} was taken from
+     * @param corner one of the corners from {@link #getCorners}, possibly from before an earlier
+     *               change
+     * @return the corner that replaced it, or null if the layout has changed since
+     */
+    public synchronized PointDir.Integer setEnabled(String layout, PointDir.Integer corner, boolean enabled) {
+        CornerState current = state;
+        if (!current.fingerprint.equals(layout)) {
+            return null;
+        }
+        PointDir.Integer p = current.find(corner);
+        if (p == null) {
+            return null;
+        }
+        CornerState next = current.withEnabled(p, enabled);
+        state = next;
+        metrics.setCorners(next.index);
+        profiles.put(next.fingerprint, next.byScreen, next.barriers, next.index.originX, next.index.originY);
+        repaintCorner(p);
+        return next.find(p);
+    }
+
+    /**
+     * Replaces the barriers along the current layout's edges, keeping only the parts that lie on
+     * an edge between two screens.
+     *
+     * @param layout   the {@link #getLayout} that {@code barriers} were drawn on
+     * @param barriers relative to the top left of the layout, like {@link #getCorners}
+     * @return the barriers now in place, or null if the layout has changed since
+     */
+    public synchronized List<Barrier> setBarriers(String layout, List<Barrier> barriers) {
+        CornerState current = state;
+        if (!current.fingerprint.equals(layout)) {
+            return null;
+        }
+        CornerState next = current.withBarriers(Barrier.clip(barriers, edges(current.screens, current.bounds())));
+        state = next;
+        metrics.setCorners(next.index);
+        profiles.put(next.fingerprint, next.byScreen, next.barriers, next.index.originX, next.index.originY);
+        return next.barriers;
+    }
+
+    /**
+     * Recompiles the corners with windows reaching {@code window} pixels into the screen and
+     * detours of {@code detour} pixels, for this layout and the ones after it.
+     */
+    public synchronized void setCapture(int window, int detour) {
+        this.window = window;
+        this.detour = detour;
+        CornerState current = state;
+        if (current.index.window == window && current.index.cornerDetour == detour) {
+            return;
+        }
+        CornerState next = current.withCapture(window, detour);
+        state = next;
+        metrics.setCorners(next.index);
+    }
+
+    /**
+     * Switches how the pointer is moved across corners, from the next crossing on.
+     *
+     * @param warp the strategy to use, or null to pick the fastest way that works here, which
+     *             moves the pointer about for a moment on the sampling thread
+     */
+    synchronized void setWarpStrategy(WarpStrategy warp) {
+        if (engine == null) {
+            return;
+        }
+        if (warp != null) {
+            calibrate = false;
+            engine.setWarpStrategy(warp);
+        } else {
+            calibrate = true;
+        }
+    }
+
+    /**
+     * @return identifies the current screen layout; changes whenever {@link #getScreens} does
+     */
+    public String getLayout() {
+        return state.fingerprint;
+    }
+
+    /**
+     * @return the barriers of the current layout, relative to its top left; never changes
+     */
+    public List<Barrier> getBarriers() {
+        return state.barriers;
+    }
+
+    /**
+     * @return every stretch of boundary between two screens of the current layout, as pass-through
+     * barriers relative to its top left
+     */
+    public List<Barrier> getEdges() {
+        CornerState current = state;
+        return edges(current.screens, current.bounds());
+    }
+
+    /**
+     * @return the corners of the current layout, relative to its top left; never changes
+     */
     public List<PointDir.Integer> getCorners() {
-        return corners;
+        return state.corners;
     }
 
+    /**
+     * @return the screens of the current layout; never changes
+     */
     public List<Rectangle> getScreens() {
-        return screens;
+        return state.screens;
+    }
+
+    public SamplingScheduler getScheduler() {
+        return scheduler;
     }
 
     public int getDebugFontSize() {
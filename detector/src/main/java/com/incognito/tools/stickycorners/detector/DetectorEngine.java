@@ -0,0 +1,126 @@
+package com.incognito.tools.stickycorners.detector;
+
+import java.util.Arrays;
+
+/**
+ * One detector tick at a time: reads the pointer, moves it across the corner it got stuck on if
+ * there is one, and works out when to look again. Everything outside the process goes through a
+ * {@link PointerSource} and a {@link PointerActuator}, so the same engine runs against the real
+ * pointer in the {@link Detector} and against a simulated one without a display.
+ */
+class DetectorEngine {
+    private final PointerSource source;
+    private final PointerActuator actuator;
+    private final SamplingScheduler scheduler;
+    private final DetectorMetrics metrics;
+    private final PointerTrace trace;
+    private final PointerTracker tracker = new PointerTracker();
+    private final int[] position = new int[2];
+    private final PointerActuator timed;
+    /**
+     * The index and rule of the last warp, until the next sample shows whether it took.
+     */
+    private CornerIndex warpedIndex;
+    private int warpedRule = -1;
+    private volatile WarpStrategy strategy = new ThreeStepWarp();
+    private long delay;
+    private int ticks;
+
+    /**
+     * @param trace where to record pointer samples, or null to not record them
+     */
+    DetectorEngine(PointerSource source, PointerActuator actuator, SamplingScheduler scheduler,
+                   DetectorMetrics metrics, PointerTrace trace) {
+        this.source = source;
+        this.actuator = actuator;
+        this.scheduler = scheduler;
+        this.metrics = metrics;
+        this.trace = trace;
+        this.delay = scheduler.getMinInterval();
+        this.timed = (x, y) -> {
+            long start = System.nanoTime();
+            actuator.moveTo(x, y);
+            metrics.recordMouseMove(System.nanoTime() - start);
+        };
+        metrics.setWarpStrategy(strategy.getName());
+    }
+
+    void setWarpStrategy(WarpStrategy strategy) {
+        this.strategy = strategy;
+        metrics.setWarpStrategy(strategy.getName());
+    }
+
+    WarpStrategy getWarpStrategy() {
+        return strategy;
+    }
+
+    /**
+     * Tries the warp strategies on a corner of {@code index} with the real source and actuator,
+     * and keeps the fastest one that works. Moves the pointer about for a moment.
+     */
+    void calibrate(CornerIndex index) {
+        setWarpStrategy(new WarpCalibration(source, actuator)
+                .pick(index, Arrays.asList(new ThreeStepWarp(), new DirectWarp())));
+    }
+
+    /**
+     * Samples the pointer once against {@code index}.
+     *
+     * @param now {@link System#nanoTime} when the tick started
+     * @return milliseconds to wait before the next tick
+     */
+    long tick(CornerIndex index, long now) {
+        FlightEvents.Tick event = ++ticks % FlightEvents.TICK_SAMPLE == 0 && FlightEvents.Tick.isRecorded()
+                ? new FlightEvents.Tick() : null;
+        if (event != null) {
+            event.begin();
+        }
+        if (!source.locate(position)) {
+            return delay;
+        }
+        if (warpedRule >= 0) {
+            if (warpedIndex.across(warpedRule, position[0], position[1])) {
+                metrics.recordWarp(warpedIndex, warpedRule);
+            }
+            warpedIndex = null;
+            warpedRule = -1;
+        }
+        int i = tracker.sample(index, position[0], position[1]);
+        if (trace != null) {
+            trace.record(index, now, position[0], position[1], i);
+        }
+        if (i >= 0) {
+            metrics.recordCrossing(index, i);
+            if (FlightEvents.Crossing.isRecorded()) {
+                new FlightEvents.Crossing().commit(index, i, position[0], position[1]);
+            }
+            warp();
+            warpedIndex = index;
+            warpedRule = i;
+        }
+        int x = tracker.getX();
+        int y = tracker.getY();
+        delay = scheduler.next(x, y, index.distance(x, y, scheduler.reach(x, y)));
+        metrics.recordTick(System.nanoTime() - now);
+        if (event != null) {
+            event.commit(x, y, delay);
+        }
+        return delay;
+    }
+
+    /**
+     * Moves the pointer across the corner the current sample is stuck on, along the path the
+     * {@link #tracker} worked out, timing every move.
+     */
+    private void warp() {
+        WarpStrategy strategy = this.strategy;
+        FlightEvents.Warp event = FlightEvents.Warp.isRecorded() ? new FlightEvents.Warp() : null;
+        if (event != null) {
+            event.begin();
+        }
+        strategy.warp(tracker.path, timed);
+        if (event != null) {
+            event.commit(strategy, tracker.path);
+        }
+    }
+}
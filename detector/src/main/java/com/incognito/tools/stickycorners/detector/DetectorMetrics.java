@@ -0,0 +1,471 @@
+package com.incognito.tools.stickycorners.detector;
+
+import com.incognito.tools.stickycorners.detector.probe.TimedScreenProbe;
+
+import javax.management.JMException;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.logging.Logger;
+
+/**
+ * Counters for the detector loop, published over JMX as
+ * {@code com.incognito.tools.stickycorners:type=DetectorMetrics}.
+ * <p>
+ * Everything the sampling thread records goes into atomics and preallocated arrays, so recording
+ * never locks or allocates and metrics can stay on all the time. Per corner counts are kept for the
+ * current {@link CornerIndex} and start again from zero whenever the layout changes.
+ */
+public class DetectorMetrics implements DetectorMetricsMBean {
+    private static Logger log = Logger.getLogger("DetectorMetrics");
+    static final String NAME = "com.incognito.tools.stickycorners:type=DetectorMetrics";
+
+    private final Timing ticks = new Timing();
+    private final Timing jitter = new Timing();
+    private final Timing periods = new Timing();
+    private final AtomicLong lateWakes = new AtomicLong();
+    private final Timing mouseMoves = new Timing();
+    private final AtomicLong crossings = new AtomicLong();
+    private final AtomicLong warps = new AtomicLong();
+    private final AtomicLong restarts = new AtomicLong();
+    private final AtomicLong coalescedRefreshes = new AtomicLong();
+    private final AtomicLong cancelledProbes = new AtomicLong();
+    private volatile CornerCounts cornerCounts = new CornerCounts(null);
+    private volatile TimedScreenProbe probe;
+    private volatile String warpStrategy = "";
+    private final CompletableFuture<Long> firstTick = new CompletableFuture<>();
+
+    /**
+     * Registers with the platform MBean server. A failure is logged and otherwise ignored, the
+     * detector works the same without metrics.
+     */
+    void register() {
+        try {
+            ManagementFactory.getPlatformMBeanServer().registerMBean(this, new ObjectName(NAME));
+        } catch (JMException e) {
+            log.warning(() -> "Could not register metrics: " + e.getMessage());
+        }
+    }
+
+    void setProbe(TimedScreenProbe probe) {
+        this.probe = probe;
+    }
+
+    /**
+     * Starts counting crossings and warps for the corners of {@code index}, carrying the counts
+     * over if it only enables different corners of the same layout.
+     */
+    void setCorners(CornerIndex index) {
+        CornerCounts counts = cornerCounts;
+        cornerCounts = index.sameCorners(counts.index)
+                ? new CornerCounts(index, counts.crossings, counts.warps)
+                : new CornerCounts(index);
+    }
+
+    void setWarpStrategy(String name) {
+        warpStrategy = name;
+    }
+
+    /**
+     * Notes that corners are protected from now on, if it hasn't been noted already.
+     */
+    void recordFirstTick() {
+        if (!firstTick.isDone()) {
+            firstTick.complete(ManagementFactory.getRuntimeMXBean().getUptime());
+        }
+    }
+
+    /**
+     * @return completes with the milliseconds from JVM start to the detector's first tick
+     */
+    CompletableFuture<Long> firstTick() {
+        return firstTick;
+    }
+
+    void recordTick(long nanos) {
+        ticks.record(nanos);
+    }
+
+    /**
+     * @param nanos how much later than its deadline the sampling thread woke up
+     */
+    void recordJitter(long nanos) {
+        jitter.record(Math.max(0, nanos));
+    }
+
+    /**
+     * @param nanos time between the starts of two consecutive ticks
+     */
+    void recordPeriod(long nanos) {
+        periods.record(nanos);
+    }
+
+    /**
+     * Counts a wake so late that a whole period was missed and the schedule started over.
+     */
+    void recordLateWake() {
+        lateWakes.incrementAndGet();
+    }
+
+    void recordCrossing(CornerIndex index, int i) {
+        crossings.incrementAndGet();
+        CornerCounts counts = cornerCounts;
+        if (counts.index == index) {
+            counts.crossings.incrementAndGet(i);
+        }
+    }
+
+    /**
+     * Counts a warp across rule {@code i} that actually left the pointer on the other side, as
+     * opposed to {@link #recordCrossing}, which counts every time the pointer got stuck.
+     */
+    void recordWarp(CornerIndex index, int i) {
+        warps.incrementAndGet();
+        CornerCounts counts = cornerCounts;
+        if (counts.index == index) {
+            counts.warps.incrementAndGet(i);
+        }
+    }
+
+    void recordMouseMove(long nanos) {
+        mouseMoves.record(nanos);
+    }
+
+    void recordRestart() {
+        restarts.incrementAndGet();
+    }
+
+    /**
+     * Counts a refresh request folded into one already waiting to run.
+     */
+    void recordCoalescedRefresh() {
+        coalescedRefreshes.incrementAndGet();
+    }
+
+    /**
+     * Counts a probe in flight whose result was thrown away because a newer refresh was requested.
+     */
+    void recordCancelledProbe() {
+        cancelledProbes.incrementAndGet();
+    }
+
+    @Override
+    public long getTickCount() {
+        return ticks.count.get();
+    }
+
+    @Override
+    public long getTickAverageMicros() {
+        return ticks.averageMicros();
+    }
+
+    @Override
+    public long getTickMaxMicros() {
+        return ticks.maxMicros();
+    }
+
+    @Override
+    public String[] getTickPercentiles() {
+        return ticks.percentiles();
+    }
+
+    @Override
+    public String[] getTickHistogram() {
+        return ticks.histogram();
+    }
+
+    @Override
+    public long getPeriodAverageMicros() {
+        return periods.averageMicros();
+    }
+
+    @Override
+    public String[] getPeriodPercentiles() {
+        return periods.percentiles();
+    }
+
+    @Override
+    public String[] getPeriodHistogram() {
+        return periods.histogram();
+    }
+
+    @Override
+    public long getJitterAverageMicros() {
+        return jitter.averageMicros();
+    }
+
+    @Override
+    public long getJitterMaxMicros() {
+        return jitter.maxMicros();
+    }
+
+    @Override
+    public String[] getJitterPercentiles() {
+        return jitter.percentiles();
+    }
+
+    @Override
+    public String[] getJitterHistogram() {
+        return jitter.histogram();
+    }
+
+    @Override
+    public long getLateWakes() {
+        return lateWakes.get();
+    }
+
+    @Override
+    public long getCrossings() {
+        return crossings.get();
+    }
+
+    @Override
+    public long getWarps() {
+        return warps.get();
+    }
+
+    @Override
+    public String[] getCornerCounts() {
+        CornerCounts counts = cornerCounts;
+        CornerIndex index = counts.index;
+        if (index == null) {
+            return new String[0];
+        }
+        List<String> lines = new ArrayList<>();
+        for (int i = 0; i < index.x.length; i++) {
+            lines.add(index.describe(i)
+                    + (index.enabled[i] || index.barrier(i) != null ? "" : " (disabled)")
+                    + ": " + counts.crossings.get(i) + " crossings, " + counts.warps.get(i) + " warps");
+        }
+        return lines.toArray(new String[0]);
+    }
+
+    @Override
+    public String getWarpStrategy() {
+        return warpStrategy;
+    }
+
+    @Override
+    public long getMouseMoveCount() {
+        return mouseMoves.count.get();
+    }
+
+    @Override
+    public long getMouseMoveAverageMicros() {
+        return mouseMoves.averageMicros();
+    }
+
+    @Override
+    public long getMouseMoveMaxMicros() {
+        return mouseMoves.maxMicros();
+    }
+
+    @Override
+    public String[] getMouseMoveHistogram() {
+        return mouseMoves.histogram();
+    }
+
+    @Override
+    public long getRestarts() {
+        return restarts.get();
+    }
+
+    @Override
+    public long getCoalescedRefreshes() {
+        return coalescedRefreshes.get();
+    }
+
+    @Override
+    public long getCancelledProbes() {
+        return cancelledProbes.get();
+    }
+
+    @Override
+    public long getFirstTickMillis() {
+        return firstTick.getNow(0L);
+    }
+
+    @Override
+    public long getScreenBoundsCount() {
+        TimedScreenProbe probe = this.probe;
+        return probe == null ? 0 : probe.getCount();
+    }
+
+    @Override
+    public long getScreenBoundsLastMicros() {
+        TimedScreenProbe probe = this.probe;
+        return probe == null ? 0 : probe.getLastMicros();
+    }
+
+    @Override
+    public long getScreenBoundsAverageMicros() {
+        TimedScreenProbe probe = this.probe;
+        return probe == null ? 0 : probe.getAverageMicros();
+    }
+
+    @Override
+    public long getScreenBoundsMaxMicros() {
+        TimedScreenProbe probe = this.probe;
+        return probe == null ? 0 : probe.getMaxMicros();
+    }
+
+    @Override
+    public long getScreenBoundsFailures() {
+        TimedScreenProbe probe = this.probe;
+        return probe == null ? 0 : probe.getFailureCount();
+    }
+
+    /**
+     * Zeroes the detector's own counters. Screen bounds timings belong to the probe and are kept.
+     */
+    @Override
+    public void reset() {
+        ticks.reset();
+        jitter.reset();
+        periods.reset();
+        lateWakes.set(0);
+        mouseMoves.reset();
+        crossings.set(0);
+        warps.set(0);
+        restarts.set(0);
+        coalescedRefreshes.set(0);
+        cancelledProbes.set(0);
+        cornerCounts = new CornerCounts(cornerCounts.index);
+    }
+
+    private static final class CornerCounts {
+        final CornerIndex index;
+        final AtomicLongArray crossings;
+        final AtomicLongArray warps;
+
+        CornerCounts(CornerIndex index) {
+            this(index, new AtomicLongArray(index == null ? 0 : index.x.length),
+                    new AtomicLongArray(index == null ? 0 : index.x.length));
+        }
+
+        CornerCounts(CornerIndex index, AtomicLongArray crossings, AtomicLongArray warps) {
+            this.index = index;
+            this.crossings = crossings;
+            this.warps = warps;
+        }
+    }
+
+    /**
+     * Count, total and maximum of a duration, plus a histogram with {@link #SUB_BUCKETS} buckets
+     * per power of two nanoseconds, so any bucket is at most an eighth as wide as the durations in
+     * it. Durations below {@link #SUB_BUCKETS} ns get a bucket each.
+     */
+    static final class Timing {
+        private static final int SUB_BITS = 3;
+        static final int SUB_BUCKETS = 1 << SUB_BITS;
+
+        final AtomicLong count = new AtomicLong();
+        final AtomicLong totalNanos = new AtomicLong();
+        final AtomicLong maxNanos = new AtomicLong();
+        final AtomicLongArray buckets = new AtomicLongArray(bucket(Long.MAX_VALUE) + 1);
+
+        static int bucket(long nanos) {
+            if (nanos < SUB_BUCKETS) {
+                return (int) Math.max(0, nanos);
+            }
+            int exponent = 63 - Long.numberOfLeadingZeros(nanos);
+            int sub = (int) (nanos >>> (exponent - SUB_BITS)) & (SUB_BUCKETS - 1);
+            return (exponent - SUB_BITS + 1) * SUB_BUCKETS + sub;
+        }
+
+        /**
+         * @return the smallest duration that no longer falls in bucket {@code k}
+         */
+        static long upperBound(int k) {
+            if (k < SUB_BUCKETS) {
+                return k + 1;
+            }
+            int exponent = k / SUB_BUCKETS + SUB_BITS - 1;
+            long sub = k % SUB_BUCKETS;
+            if (exponent == 62 && sub == SUB_BUCKETS - 1) {
+                return Long.MAX_VALUE;
+            }
+            return (SUB_BUCKETS + sub + 1) << (exponent - SUB_BITS);
+        }
+
+        void record(long nanos) {
+            count.incrementAndGet();
+            totalNanos.addAndGet(nanos);
+            maxNanos.accumulateAndGet(nanos, Math::max);
+            buckets.incrementAndGet(bucket(nanos));
+        }
+
+        long averageMicros() {
+            long n = count.get();
+            return n == 0 ? 0 : TimeUnit.NANOSECONDS.toMicros(totalNanos.get() / n);
+        }
+
+        long maxMicros() {
+            return TimeUnit.NANOSECONDS.toMicros(maxNanos.get());
+        }
+
+        /**
+         * @return the upper bound of the bucket holding the {@code percentile}th duration, in
+         * nanoseconds, or 0 if nothing was recorded
+         */
+        long percentile(double percentile) {
+            long total = 0;
+            for (int k = 0; k < buckets.length(); k++) {
+                total += buckets.get(k);
+            }
+            long rank = (long) Math.ceil(total * percentile / 100);
+            long seen = 0;
+            for (int k = 0; k < buckets.length() && total > 0; k++) {
+                seen += buckets.get(k);
+                if (seen >= rank) {
+                    return upperBound(k);
+                }
+            }
+            return 0;
+        }
+
+        String[] percentiles() {
+            return new String[]{
+                    "p50: < " + format(percentile(50)),
+                    "p90: < " + format(percentile(90)),
+                    "p99: < " + format(percentile(99)),
+                    "p99.9: < " + format(percentile(99.9)),
+                    "max: " + format(maxNanos.get())
+            };
+        }
+
+        String[] histogram() {
+            List<String> lines = new ArrayList<>();
+            for (int k = 0; k < buckets.length(); k++) {
+                long n = buckets.get(k);
+                if (n > 0) {
+                    lines.add("< " + format(upperBound(k)) + ": " + n);
+                }
+            }
+            return lines.toArray(new String[0]);
+        }
+
+        private static String format(long nanos) {
+            if (nanos < 10_000) {
+                return nanos + "ns";
+            } else if (nanos < 10_000_000) {
+                return nanos / 1_000 + "us";
+            }
+            return nanos / 1_000_000 + "ms";
+        }
+
+        void reset() {
+            count.set(0);
+            totalNanos.set(0);
+            maxNanos.set(0);
+            for (int k = 0; k < buckets.length(); k++) {
+                buckets.set(k, 0);
+            }
+        }
+    }
+}
@@ -0,0 +1,71 @@
+package com.incognito.tools.stickycorners.detector;
+
+/**
+ * What {@link DetectorMetrics} shows over JMX. Durations are in microseconds; histograms list one
+ * line per non-empty bucket, and percentiles are the upper bound of the bucket they fall in.
+ * Crossings count every time the pointer got stuck and was warped, warps only the ones that left
+ * it past the boundary by the next sample.
+ */
+public interface DetectorMetricsMBean {
+    long getTickCount();
+
+    long getTickAverageMicros();
+
+    long getTickMaxMicros();
+
+    String[] getTickPercentiles();
+
+    String[] getTickHistogram();
+
+    long getPeriodAverageMicros();
+
+    String[] getPeriodPercentiles();
+
+    String[] getPeriodHistogram();
+
+    long getJitterAverageMicros();
+
+    long getJitterMaxMicros();
+
+    String[] getJitterPercentiles();
+
+    String[] getJitterHistogram();
+
+    long getLateWakes();
+
+    long getCrossings();
+
+    long getWarps();
+
+    String[] getCornerCounts();
+
+    String getWarpStrategy();
+
+    long getMouseMoveCount();
+
+    long getMouseMoveAverageMicros();
+
+    long getMouseMoveMaxMicros();
+
+    String[] getMouseMoveHistogram();
+
+    long getRestarts();
+
+    long getCoalescedRefreshes();
+
+    long getCancelledProbes();
+
+    long getFirstTickMillis();
+
+    long getScreenBoundsCount();
+
+    long getScreenBoundsLastMicros();
+
+    long getScreenBoundsAverageMicros();
+
+    long getScreenBoundsMaxMicros();
+
+    long getScreenBoundsFailures();
+
+    void reset();
+}
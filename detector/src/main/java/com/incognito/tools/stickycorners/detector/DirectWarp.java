@@ -0,0 +1,18 @@
+package com.incognito.tools.stickycorners.detector;
+
+/**
+ * Moves the pointer straight to where it should end up on the next screen in a single move.
+ */
+class DirectWarp implements WarpStrategy {
+    static final String NAME = "direct";
+
+    @Override
+    public void warp(int[] path, PointerActuator actuator) {
+        actuator.moveTo(path[path.length - 2], path[path.length - 1]);
+    }
+
+    @Override
+    public String getName() {
+        return NAME;
+    }
+}
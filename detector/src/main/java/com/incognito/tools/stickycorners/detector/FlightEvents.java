@@ -0,0 +1,103 @@
+package com.incognito.tools.stickycorners.detector;
+
+/**
+ * Java Flight Recorder events for what the detector does: sampler ticks, crossings, warps, layout
+ * probes and restarts.
+ * <p>
+ * This is the Java 8 version, where every event does nothing; the detector jar is multi-release,
+ * and on Java 11 and later the classes in {@code META-INF/versions/11} take its place with real
+ * {@code jdk.jfr.Event}s. Both have the same shape, so callers create a fresh event for every
+ * piece of work, {@code begin()} it before the work it times and {@code commit(...)} it after. An
+ * event must not be reused: it keeps the start and duration of its first commit.
+ * <p>
+ * The events the sampling thread fires, {@link Tick}, {@link Crossing} and {@link Warp}, are only
+ * created when {@code isRecorded()} says their type is being recorded, so the loop allocates
+ * nothing otherwise:
+ * <pre>
+ * FlightEvents.Warp event = FlightEvents.Warp.isRecorded() ? new FlightEvents.Warp() : null;
+ * if (event != null) {
+ *     event.begin();
+ * }
+ * strategy.warp(path, actuator);
+ * if (event != null) {
+ *     event.commit(strategy, path);
+ * }
+ * </pre>
+ * Here nothing is ever recorded. On Java 11 {@code commit} fills in its fields only after
+ * {@code shouldCommit()} says it will be kept, so arguments are passed as they are and anything
+ * slower, like describing a corner, waits until then.
+ */
+final class FlightEvents {
+    static final int TICK_SAMPLE = 64;
+
+    private FlightEvents() {
+    }
+
+    /**
+     * One pass of the sampling loop. Only one tick in {@link #TICK_SAMPLE} is recorded while it's
+     * on, since the loop runs up to a thousand times a second; the engine picks which.
+     */
+    static final class Tick {
+        static boolean isRecorded() {
+            return false;
+        }
+
+        void begin() {
+        }
+
+        void commit(int x, int y, long delayMillis) {
+        }
+    }
+
+    /**
+     * The pointer got stuck on rule {@code rule} of {@code index}, at ({@code x}, {@code y}) in
+     * desktop coordinates.
+     */
+    static final class Crossing {
+        static boolean isRecorded() {
+            return false;
+        }
+
+        void commit(CornerIndex index, int rule, int x, int y) {
+        }
+    }
+
+    /**
+     * The pointer being moved across along {@code path}, timed from {@code begin} to
+     * {@code commit}.
+     */
+    static final class Warp {
+        static boolean isRecorded() {
+            return false;
+        }
+
+        void begin() {
+        }
+
+        void commit(WarpStrategy strategy, int[] path) {
+        }
+    }
+
+    /**
+     * One read of the screen layout, finding {@code screens} screens, none if it failed.
+     */
+    static final class Probe {
+        void begin() {
+        }
+
+        void commit(String probe, int screens) {
+        }
+    }
+
+    /**
+     * The detector being started on, or moved onto, a layout of {@code screens} screens;
+     * {@code changed} is false when the layout turned out to be the one it already had.
+     */
+    static final class Restart {
+        void begin() {
+        }
+
+        void commit(int screens, boolean started, boolean changed) {
+        }
+    }
+}
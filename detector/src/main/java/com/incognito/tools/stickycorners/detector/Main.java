@@ -1,25 +1,33 @@
 package com.incognito.tools.stickycorners.detector;
 
+import com.incognito.tools.stickycorners.detector.probe.InProcessScreenProbe;
+import com.incognito.tools.stickycorners.detector.probe.ScreenProbe;
+import com.incognito.tools.stickycorners.detector.probe.TimedScreenProbe;
 import com.incognito.tools.stickycorners.detector.settings.Form;
 
-import javax.swing.ImageIcon;
 import javax.swing.JOptionPane;
+import javax.swing.SwingUtilities;
 import javax.swing.UIManager;
 import java.awt.AWTException;
 import java.awt.CheckboxMenuItem;
+import java.awt.GraphicsEnvironment;
 import java.awt.MenuItem;
 import java.awt.PopupMenu;
 import java.awt.Rectangle;
+import java.awt.Robot;
 import java.awt.SystemTray;
+import java.awt.Toolkit;
 import java.awt.TrayIcon;
 import java.awt.event.ItemEvent;
-import java.io.BufferedReader;
 import java.io.IOException;
-import java.io.InputStream;
-import java.io.InputStreamReader;
+import java.lang.reflect.InvocationTargetException;
 import java.net.URL;
-import java.util.Scanner;
-import java.util.StringJoiner;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.concurrent.CompletableFuture;
 import java.util.logging.Logger;
 
 /**
@@ -31,17 +39,36 @@ public class Main {
     private static boolean debug = false;
     private static long pollInterval = 5;
     private static boolean autoRefresh = false;
-    private static Thread refreshThread;
+    private static RefreshScheduler refresher;
     private static String graphicsJarPath = "";
-    private static TrayIcon icon;
-    private static Form settingsForm;
+    private static long sampleMin = SamplingScheduler.DEFAULT_MIN_INTERVAL;
+    private static long sampleMax = SamplingScheduler.DEFAULT_MAX_INTERVAL;
+    private static String probeName = InProcessScreenProbe.NAME;
+    private static TimedScreenProbe probe;
+    private static Profiles profiles = new Profiles(Profiles.defaultFile());
+    private static DetectorMetrics metrics = new DetectorMetrics();
+    private static PointerTrace trace;
+    private static String warpName = WarpStrategy.AUTO;
+    private static int captureWindow = CornerIndex.WINDOW;
+    private static int captureDetour = CornerIndex.DETOUR;
+    private static Path configFile = ConfigWatcher.defaultFile();
+    private static ConfigWatcher config;
+    private static CompletableFuture<Robot> robot;
+    private static volatile TrayIcon icon;
 
     private static synchronized void restart(Rectangle[] screenBounds) {
-        if (detector != null) {
-            detector.stop();
-            detector.dispose();
+        FlightEvents.Restart event = new FlightEvents.Restart();
+        event.begin();
+        if (detector == null) {
+            detector = new Detector(screenBounds, debug, robot.join(), new SamplingScheduler(sampleMin, sampleMax),
+                    profiles, metrics, trace, WarpStrategy.named(warpName), captureWindow, captureDetour);
+            event.commit(screenBounds.length, true, true);
+        } else if (detector.update(screenBounds)) {
+            metrics.recordRestart();
+            event.commit(screenBounds.length, false, true);
+        } else {
+            event.commit(screenBounds.length, false, false);
         }
-        detector = new Detector(screenBounds, debug);
     }
 
     private static void parse(String[] args) {
@@ -53,6 +80,24 @@ public class Main {
                 pollInterval = Math.max(5, Long.parseLong(args[++i]));
             } else if ((s.equals("-g") || s.equals("--graphics")) && i != args.length - 1) {
                 graphicsJarPath = args[++i];
+            } else if (s.equals("--sample-min") && i != args.length - 1) {
+                sampleMin = Math.max(1, Long.parseLong(args[++i]));
+            } else if (s.equals("--sample-max") && i != args.length - 1) {
+                sampleMax = Math.max(1, Long.parseLong(args[++i]));
+            } else if ((s.equals("-p") || s.equals("--probe")) && i != args.length - 1) {
+                probeName = args[++i];
+            } else if ((s.equals("-w") || s.equals("--warp")) && i != args.length - 1) {
+                String name = args[++i].trim();
+                if (name.equals(WarpStrategy.AUTO) || WarpStrategy.named(name) != null) {
+                    warpName = name;
+                } else {
+                    log.warning(() -> "Unknown warp strategy " + name + ", picking one automatically");
+                }
+            } else if ((s.equals("-c") || s.equals("--config")) && i != args.length - 1) {
+                configFile = Paths.get(args[++i]);
+            } else if ((s.equals("-t") || s.equals("--trace")) && i != args.length - 1) {
+                int samples = Integer.parseInt(args[++i]);
+                trace = samples > 0 ? new PointerTrace(samples) : null;
             }
         }
     }
@@ -61,57 +106,45 @@ public class Main {
         log.info(message);
     }
 
+    /**
+     * Starts creating the robot, probing the layout and setting up the tray all at once, since
+     * none of them needs the others, and logs the detector's first tick when it comes, without
+     * waiting for it. Swing's look and feel and the settings form are left until the settings are
+     * first opened.
+     */
     public static void main(String[] args) throws Exception {
         parse(args);
-        setupTray();
-        refreshThread = makeThread();
-        refreshThread.start();
+        config = new ConfigWatcher(configFile, new Config(sampleMin, sampleMax, captureWindow, captureDetour,
+                warpName, pollInterval), Main::applyConfig);
+        useConfig(config.load());
+        robot = CompletableFuture.supplyAsync(Main::createRobot);
+        profiles.load();
+        probe = ScreenProbe.select(probeName, graphicsJarPath);
+        metrics.setProbe(probe);
+        metrics.register();
+        log.info(() -> "Reading screen layout with the " + probe.getName() + " probe");
+        refresher = new RefreshScheduler(probe, pollInterval, Main::restart, Main::noScreens, metrics);
+        refresher.setAutoRefresh(autoRefresh);
+        refresher.start();
+        config.start();
+        CompletableFuture.runAsync(Main::setupTray).exceptionally(e -> {
+            log.severe(() -> "Could not set up the tray icon: " + e.getMessage());
+            return null;
+        });
+        metrics.firstTick().thenAccept(millis -> log.info(() -> "Corners protected " + millis + "ms after launch"));
     }
 
-    private static Thread makeThread() {
-        return new Thread(() -> {
-            Rectangle[] screenBounds = getScreenBounds();
-            if (screenBounds.length == 0) {
-                log.severe("Can't start auto-refresh thread");
-                close(false);
-                return;
-            }
-            restart(screenBounds);
-            while (autoRefresh) {
-                if (Thread.currentThread().isInterrupted()) {
-                    log.info("Stopping auto-refresh thread");
-                    break;
-                }
-                try {
-                    Thread.sleep(pollInterval * 1000);
-                } catch (InterruptedException e) {
-                    log.info("Stopping auto-refresh thread");
-                    Thread.currentThread().interrupt();
-                    break;
-                }
-                Rectangle[] newScreenBounds = getScreenBounds();
-                if (newScreenBounds.length != screenBounds.length) {
-                    notification("Detected change in screen environment, restarting...");
-                    restart(newScreenBounds);
-                    for (int i = 0; i < screenBounds.length; i++) {
-                        screenBounds[i] = null;
-                    }
-                    screenBounds = newScreenBounds;
-                } else {
-                    for (int i = 0; i < screenBounds.length; i++) {
-                        if (!screenBounds[i].equals(newScreenBounds[i])) {
-                            notification("Detected change in screen orientations, restarting...");
-                            restart(newScreenBounds);
-                            for (int j = 0; j < screenBounds.length; j++) {
-                                screenBounds[j] = null;
-                            }
-                            screenBounds = newScreenBounds;
-                            break;
-                        }
-                    }
-                }
-            }
-        });
+    /**
+     * @return a robot, or null if there can't be one here, headless or not allowed to, so that
+     * {@link #restart} always gets one or the other rather than an exception
+     */
+    private static Robot createRobot() {
+        try {
+            return new Robot();
+        } catch (AWTException | RuntimeException e) {
+            log.severe(() -> "Could not create robot, corners can't be fixed: " + e.getMessage());
+            return null;
+        }
     }
 
     private static void setupTray() {
@@ -119,18 +152,12 @@ public class Main {
             return;
         }
 
-        try {
-            UIManager.setLookAndFeel(UIManager.getSystemLookAndFeelClassName());
-        } catch (Exception e) {
-            log.severe(() -> "Could not set default look and feel: " + e.getMessage());
-        }
-
         URL iconPath = Main.class.getClassLoader().getResource("icon.png");
         if (iconPath == null) {
             log.severe("Could not load icon.png!");
             return;
         }
-        icon = new TrayIcon(new ImageIcon(iconPath).getImage());
+        TrayIcon icon = new TrayIcon(Toolkit.getDefaultToolkit().getImage(iconPath));
         icon.setImageAutoSize(true);
         icon.setToolTip("StickyCorners Fix");
         final PopupMenu menu = new PopupMenu();
@@ -146,6 +173,11 @@ public class Main {
         menu.add(debug);
         menu.add(autoRefresh);
         menu.add(refresh);
+        if (trace != null) {
+            MenuItem saveTrace = new MenuItem("Save Pointer Trace");
+            saveTrace.addActionListener(e -> saveTrace());
+            menu.add(saveTrace);
+        }
         menu.add(exit);
 
         icon.setPopupMenu(menu);
@@ -155,115 +187,143 @@ public class Main {
             log.severe(() -> "Could not add to system tray: " + e.getMessage());
             return;
         }
+        Main.icon = icon;
 
-        settings.addActionListener(e -> {
-            if (settingsForm == null) {
-                settingsForm = new Form(pollInterval, detector);
-                settingsForm.onClose(() -> settingsForm = null);
-            } else {
-                settingsForm.bringToFront();
-            }
-        });
+        settings.addActionListener(e -> Settings.open());
 
         debug.addItemListener(e -> setDebug(e.getStateChange() == ItemEvent.SELECTED));
 
         autoRefresh.addItemListener(e -> setRefresh(e.getStateChange() == ItemEvent.SELECTED));
 
-        refresh.addActionListener(e -> {
-            refreshThread.interrupt();
-            refreshThread = makeThread();
-            refreshThread.start();
-        });
+        refresh.addActionListener(e -> refresher.requestRefresh());
 
         exit.addActionListener(e -> close(true));
     }
 
-    private static Rectangle[] getScreenBounds() {
-        Process proc;
+    /**
+     * Writes out the pointer samples recorded so far, for {@link TraceReplay}.
+     */
+    private static void saveTrace() {
+        PointerTrace.Recording recording = trace.snapshot();
+        if (recording == null) {
+            notification("No pointer samples recorded yet");
+            return;
+        }
+        Path file = Profiles.defaultFile().resolveSibling(
+                "trace-" + new SimpleDateFormat("yyyyMMdd-HHmmss").format(new Date()) + ".bin");
         try {
-            proc = Runtime.getRuntime().exec(new String[]{"java", "-jar", graphicsJarPath + "graphics-1.0.jar"});
+            Files.createDirectories(file.getParent());
+            recording.write(file);
+            notification("Saved " + recording.size() + " pointer samples to " + file);
         } catch (IOException e) {
-            log.severe(() -> "Could not execute process: " + e.getMessage());
-            throw new RuntimeException();
+            log.severe(() -> "Could not save pointer trace to " + file + ": " + e.getMessage());
         }
+    }
 
-        BufferedReader input = new BufferedReader(new InputStreamReader(proc.getInputStream()));
-        Scanner in = new Scanner(input);
+    private static synchronized void setDebug(boolean state) {
+        debug = state;
+        if (detector != null) {
+            detector.setVisible(debug);
+        }
+    }
 
-        TriConsumer<Scanner, BufferedReader, InputStream> close = (scanner, reader, stream) -> {
-            if (scanner != null) {
-                scanner.close();
-            }
-            try {
-                if (reader != null) {
-                    reader.close();
-                }
-                if (stream != null) {
-                    stream.close();
-                }
-            } catch (IOException e) {
-                log.severe(() -> "Could not close stream: " + e.getMessage());
-            }
-        };
+    private static void setRefresh(boolean state) {
+        autoRefresh = state;
+        refresher.setAutoRefresh(state);
+    }
 
-        if (!in.hasNext()) {
-            BufferedReader errInput = new BufferedReader(new InputStreamReader(proc.getErrorStream()));
-            StringJoiner lines = new StringJoiner("\n");
-            try {
-                String line;
-                while ((line = errInput.readLine()) != null) {
-                    lines.add(line);
-                }
-                log.severe(() -> "No output from graphics: " + lines.toString());
-            } catch (Exception ex) {
-                log.severe(() -> "Could not read errors from process:" + ex.getMessage());
-            }
-            close.apply(in, input, proc.getInputStream());
-            close.apply(null, errInput, proc.getErrorStream());
-            JOptionPane.showMessageDialog(null, "Cannot detect screen settings!\n" +
-                    "Is the graphics jar in the same folder as the detector jar?\n" +
-                    "Try setting the path to the graphics jar with the -g parameter.", "Error", JOptionPane.ERROR_MESSAGE);
-            return new Rectangle[0];
+    private static synchronized void useConfig(Config config) {
+        sampleMin = config.sampleMin;
+        sampleMax = config.sampleMax;
+        captureWindow = config.captureWindow;
+        captureDetour = config.captureDetour;
+        warpName = config.warp;
+        pollInterval = config.refreshInterval;
+    }
+
+    /**
+     * Applies an edited config file to the running detector and refresh loop. Only what changed
+     * is touched, so an edit to one setting doesn't undo a change made to another from the tray.
+     */
+    private static synchronized void applyConfig(Config previous, Config next) {
+        useConfig(next);
+        if (next.refreshInterval != previous.refreshInterval) {
+            setInterval(next.refreshInterval);
         }
-        int numScreens = in.nextInt();
-        Rectangle[] screens = new Rectangle[numScreens];
-        for (int i = 0; i < numScreens; i++) {
-            screens[i] = new Rectangle(in.nextInt(), in.nextInt(), in.nextInt(), in.nextInt());
+        if (detector == null) {
+            return;
+        }
+        if (next.sampleMin != previous.sampleMin || next.sampleMax != previous.sampleMax) {
+            detector.getScheduler().setIntervals(next.sampleMin, next.sampleMax);
+        }
+        if (next.captureWindow != previous.captureWindow || next.captureDetour != previous.captureDetour) {
+            detector.setCapture(next.captureWindow, next.captureDetour);
+        }
+        if (!next.warp.equals(previous.warp)) {
+            detector.setWarpStrategy(WarpStrategy.named(next.warp));
         }
-
-        close.apply(in, input, proc.getInputStream());
-
-        return screens;
     }
 
-    private static void setDebug(boolean state) {
-        debug = state;
-        detector.setVisible(debug);
+    private static void setInterval(long seconds) {
+        pollInterval = seconds;
+        refresher.setInterval(seconds);
     }
 
-    private static void setRefresh(boolean state) {
-        autoRefresh = state;
-        if (!autoRefresh && refreshThread != null) {
-            refreshThread.interrupt();
-        } else {
-            refreshThread = makeThread();
-            refreshThread.start();
+    /**
+     * Tells the user the layout couldn't be read, from the event dispatch thread, and exits.
+     */
+    private static void noScreens() {
+        if (!GraphicsEnvironment.isHeadless()) {
+            try {
+                SwingUtilities.invokeAndWait(() -> JOptionPane.showMessageDialog(null, "Cannot detect screen settings!\n" +
+                        "Is the graphics jar in the same folder as the detector jar?\n" +
+                        "Try setting the path to the graphics jar with the -g parameter.", "Error", JOptionPane.ERROR_MESSAGE));
+            } catch (InterruptedException | InvocationTargetException e) {
+                log.severe(() -> "Could not show error: " + e.getMessage());
+            }
         }
+        close(false);
     }
 
     private static void close(boolean interrupt) {
         if (interrupt) {
-            refreshThread.interrupt();
+            refresher.close();
         }
+        config.close();
         if (detector != null) {
             detector.stop();
         }
+        probe.close();
         SystemTray.getSystemTray().remove(icon);
         System.exit(0);
     }
 
-    @FunctionalInterface
-    public interface TriConsumer<A, B, C> {
-        void apply(A a, B b, C c);
+    /**
+     * The settings window, kept out of {@link Main} so that it, its layout classes and the system
+     * look and feel only get loaded the first time it's opened.
+     */
+    private static class Settings {
+        private static Form form;
+
+        static {
+            try {
+                UIManager.setLookAndFeel(UIManager.getSystemLookAndFeelClassName());
+            } catch (Exception e) {
+                log.severe(() -> "Could not set default look and feel: " + e.getMessage());
+            }
+        }
+
+        static void open() {
+            if (detector == null) {
+                return;
+            }
+            if (form == null) {
+                form = new Form(pollInterval, detector);
+                form.onClose(() -> form = null);
+                form.onIntervalChange(Main::setInterval);
+            } else {
+                form.bringToFront();
+            }
+        }
     }
 }
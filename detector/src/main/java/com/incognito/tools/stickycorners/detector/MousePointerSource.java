@@ -0,0 +1,22 @@
+package com.incognito.tools.stickycorners.detector;
+
+import java.awt.MouseInfo;
+import java.awt.Point;
+import java.awt.PointerInfo;
+
+/**
+ * Reads the real pointer through {@link MouseInfo}.
+ */
+class MousePointerSource implements PointerSource {
+    @Override
+    public boolean locate(int[] position) {
+        PointerInfo pi = MouseInfo.getPointerInfo();
+        if (pi == null) {
+            return false;
+        }
+        Point location = pi.getLocation();
+        position[0] = location.x;
+        position[1] = location.y;
+        return true;
+    }
+}
@@ -0,0 +1,11 @@
+package com.incognito.tools.stickycorners.detector;
+
+/**
+ * What the detector moves the pointer with.
+ */
+interface PointerActuator {
+    /**
+     * Moves the pointer to ({@code x}, {@code y}), in desktop coordinates.
+     */
+    void moveTo(int x, int y);
+}
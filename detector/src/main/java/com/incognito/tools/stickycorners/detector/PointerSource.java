@@ -0,0 +1,14 @@
+package com.incognito.tools.stickycorners.detector;
+
+/**
+ * Where the detector reads the pointer position from.
+ */
+interface PointerSource {
+    /**
+     * Writes the pointer position, in desktop coordinates, into {@code position[0]} and
+     * {@code position[1]}.
+     *
+     * @return false if the position can't be read right now
+     */
+    boolean locate(int[] position);
+}
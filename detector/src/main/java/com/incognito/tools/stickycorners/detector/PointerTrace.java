@@ -0,0 +1,239 @@
+package com.incognito.tools.stickycorners.detector;
+
+import com.incognito.tools.stickycorners.detector.graphics.Barrier;
+import com.incognito.tools.stickycorners.detector.graphics.Corner;
+import com.incognito.tools.stickycorners.detector.graphics.Direction;
+import com.incognito.tools.stickycorners.detector.graphics.PointDir;
+
+import java.awt.Rectangle;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * The last pointer samples the detector took, kept in a fixed size ring buffer so a report of a
+ * corner that didn't stick can be saved and replayed with {@link TraceReplay}.
+ * <p>
+ * Each sample is the time it was taken, where the pointer was and the index of the corner it got
+ * stuck on, or -1. Only the sampling thread writes, straight into preallocated arrays, so
+ * recording never locks and only allocates when the corners change. Samples only make sense
+ * against the corners they were decided with, so the buffer starts over whenever the layout or an
+ * enabled flag changes.
+ */
+class PointerTrace {
+    private static final int MAGIC = 0x53435452;
+    private static final int VERSION = 2;
+
+    private final int mask;
+    private final long[] nanos;
+    private final int[] xs;
+    private final int[] ys;
+    private final int[] decisions;
+
+    private volatile Layout layout;
+    private volatile long written;
+    private CornerIndex tracedIndex;
+
+    /**
+     * @param capacity most samples kept, rounded up to a power of two
+     */
+    PointerTrace(int capacity) {
+        int size = Integer.highestOneBit(Math.max(2, capacity) - 1) << 1;
+        mask = size - 1;
+        nanos = new long[size];
+        xs = new int[size];
+        ys = new int[size];
+        decisions = new int[size];
+    }
+
+    int capacity() {
+        return mask + 1;
+    }
+
+    /**
+     * Records a sample decided against {@code index}. Called by the sampling thread only.
+     */
+    void record(CornerIndex index, long time, int x, int y, int decision) {
+        long n = written;
+        if (index != tracedIndex) {
+            tracedIndex = index;
+            layout = new Layout(index, n);
+        }
+        int slot = (int) (n & mask);
+        nanos[slot] = time;
+        xs[slot] = x;
+        ys[slot] = y;
+        decisions[slot] = decision;
+        written = n + 1;
+    }
+
+    /**
+     * @return the samples recorded against the current layout, oldest first, or null if there
+     * aren't any
+     */
+    Recording snapshot() {
+        for (int attempt = 0; attempt < 10; attempt++) {
+            Layout layout = this.layout;
+            if (layout == null) {
+                return null;
+            }
+            long to = written;
+            long[] copyNanos = nanos.clone();
+            int[] copyX = xs.clone();
+            int[] copyY = ys.clone();
+            int[] copyDecisions = decisions.clone();
+            long after = written;
+            if (this.layout != layout) {
+                continue;
+            }
+            // anything the writer got to while copying may have been overwritten halfway, and it
+            // may already be writing sample after into the slot of after - capacity()
+            long from = Math.max(layout.start, after - capacity() + 1);
+            if (from >= to) {
+                continue;
+            }
+            int count = (int) (to - from);
+            Recording recording = new Recording(layout.bounds, layout.corners, layout.barriers, count);
+            for (int i = 0; i < count; i++) {
+                int slot = (int) ((from + i) & mask);
+                recording.nanos[i] = copyNanos[slot];
+                recording.x[i] = copyX[slot];
+                recording.y[i] = copyY[slot];
+                recording.decisions[i] = copyDecisions[slot];
+            }
+            return recording;
+        }
+        return null;
+    }
+
+    /**
+     * The corners and barriers samples were decided against, frozen when the first of them was
+     * recorded.
+     */
+    private static class Layout {
+        final long start;
+        final Rectangle bounds;
+        final List<PointDir.Integer> corners;
+        final List<Barrier> barriers;
+
+        Layout(CornerIndex index, long start) {
+            this.start = start;
+            bounds = new Rectangle(index.originX, index.originY, index.width, index.height);
+            corners = new ArrayList<>(index.corners);
+            for (int i = 0; i < index.corners; i++) {
+                PointDir.Integer p = index.source(i);
+                corners.add(new PointDir.Integer(index.x[i], index.y[i], p.direction, index.corner[i], index.enabled[i]));
+            }
+            barriers = new ArrayList<>(index.x.length - index.corners);
+            for (int i = index.corners; i < index.x.length; i++) {
+                barriers.add(index.barrier(i));
+            }
+        }
+    }
+
+    /**
+     * A saved trace: the desktop bounds, the corners and then the barriers relative to its top
+     * left in the order the detector indexed them, and the samples in desktop coordinates.
+     * Traces saved before there were barriers have none.
+     */
+    static class Recording {
+        final Rectangle bounds;
+        final List<PointDir.Integer> corners;
+        final List<Barrier> barriers;
+        final long[] nanos;
+        final int[] x;
+        final int[] y;
+        final int[] decisions;
+
+        Recording(Rectangle bounds, List<PointDir.Integer> corners, List<Barrier> barriers, int samples) {
+            this.bounds = bounds;
+            this.corners = corners;
+            this.barriers = barriers;
+            nanos = new long[samples];
+            x = new int[samples];
+            y = new int[samples];
+            decisions = new int[samples];
+        }
+
+        int size() {
+            return nanos.length;
+        }
+
+        /**
+         * Writes the trace out with times stored relative to the first sample, so each sample
+         * takes 20 bytes.
+         */
+        void write(Path file) throws IOException {
+            try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(file)))) {
+                out.writeInt(MAGIC);
+                out.writeInt(VERSION);
+                out.writeInt(bounds.x);
+                out.writeInt(bounds.y);
+                out.writeInt(bounds.width);
+                out.writeInt(bounds.height);
+                out.writeInt(corners.size());
+                for (PointDir.Integer p : corners) {
+                    out.writeInt(p.x);
+                    out.writeInt(p.y);
+                    out.writeByte(p.direction.ordinal());
+                    out.writeByte(p.corner.ordinal());
+                    out.writeBoolean(p.enabled);
+                }
+                out.writeInt(barriers.size());
+                for (Barrier b : barriers) {
+                    out.writeInt(b.line);
+                    out.writeInt(b.from);
+                    out.writeInt(b.to);
+                    out.writeByte(b.direction.ordinal());
+                    out.writeBoolean(b.sticky);
+                }
+                out.writeInt(size());
+                long first = size() == 0 ? 0 : nanos[0];
+                for (int i = 0; i < size(); i++) {
+                    out.writeLong(nanos[i] - first);
+                    out.writeInt(x[i]);
+                    out.writeInt(y[i]);
+                    out.writeInt(decisions[i]);
+                }
+            }
+        }
+
+        static Recording read(Path file) throws IOException {
+            try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file)))) {
+                if (in.readInt() != MAGIC) {
+                    throw new IOException("Not a pointer trace: " + file);
+                }
+                int version = in.readInt();
+                if (version != 1 && version != VERSION) {
+                    throw new IOException("Unsupported pointer trace version " + version + ": " + file);
+                }
+                Rectangle bounds = new Rectangle(in.readInt(), in.readInt(), in.readInt(), in.readInt());
+                int count = in.readInt();
+                List<PointDir.Integer> corners = new ArrayList<>(count);
+                for (int i = 0; i < count; i++) {
+                    corners.add(new PointDir.Integer(in.readInt(), in.readInt(),
+                            Direction.values()[in.readByte()], Corner.values()[in.readByte()], in.readBoolean()));
+                }
+                List<Barrier> barriers = new ArrayList<>();
+                for (int i = version == 1 ? 0 : in.readInt(); i > 0; i--) {
+                    barriers.add(new Barrier(in.readInt(), in.readInt(), in.readInt(),
+                            Direction.values()[in.readByte()], in.readBoolean()));
+                }
+                Recording recording = new Recording(bounds, corners, barriers, in.readInt());
+                for (int i = 0; i < recording.size(); i++) {
+                    recording.nanos[i] = in.readLong();
+                    recording.x[i] = in.readInt();
+                    recording.y[i] = in.readInt();
+                    recording.decisions[i] = in.readInt();
+                }
+                return recording;
+            }
+        }
+    }
+}
@@ -0,0 +1,52 @@
+package com.incognito.tools.stickycorners.detector;
+
+/**
+ * Decides, one pointer sample at a time, whether the pointer got stuck on a corner and where it
+ * should be moved to. Shared by the {@link Detector} and {@link TraceReplay} so a replayed trace
+ * goes through exactly the same logic as the live pointer.
+ */
+class PointerTracker {
+    private boolean sampled;
+    private int lastX;
+    private int lastY;
+
+    /**
+     * Pointer positions to move through after a sample that got stuck, as
+     * {@code x0, y0, x1, y1, x2, y2}.
+     */
+    final int[] path = new int[6];
+
+    /**
+     * Takes a sample of the pointer at ({@code x}, {@code y}). If it got stuck, {@link #path} is
+     * filled in and the pointer is taken to be at the end of it from then on.
+     *
+     * @return index in {@code index} of the rule, corner or barrier, the pointer got stuck on, or -1
+     */
+    int sample(CornerIndex index, int x, int y) {
+        int i = -1;
+        if (sampled && (x != lastX || y != lastY)) {
+            int p = index.match(lastX, lastY, x, y);
+            if (p >= 0) {
+                i = index.rule(p);
+                index.path(p, lastX, lastY, x, y, path);
+                x = path[path.length - 2];
+                y = path[path.length - 1];
+            }
+        }
+        lastX = x;
+        lastY = y;
+        sampled = true;
+        return i;
+    }
+
+    /**
+     * @return where the pointer is after the last sample, including any move along {@link #path}
+     */
+    int getX() {
+        return lastX;
+    }
+
+    int getY() {
+        return lastY;
+    }
+}
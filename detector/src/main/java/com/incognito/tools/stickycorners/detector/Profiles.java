@@ -0,0 +1,222 @@
+package com.incognito.tools.stickycorners.detector;
+
+import com.incognito.tools.stickycorners.detector.graphics.Barrier;
+import com.incognito.tools.stickycorners.detector.graphics.Corner;
+import com.incognito.tools.stickycorners.detector.graphics.Direction;
+import com.incognito.tools.stickycorners.detector.graphics.PointDir;
+
+import java.awt.Rectangle;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.logging.Logger;
+
+/**
+ * Corners worked out for each screen layout seen so far, along with which of them are enabled and
+ * the barriers set up along the layout's edges, kept on disk so a known layout comes back exactly
+ * as it was left.
+ * <p>
+ * Layouts are told apart by {@link #fingerprint}. Everything is held in memory and written out
+ * in the background, to a temporary file that then replaces the old one, so a save never blocks
+ * the caller and a crash mid-write never leaves a half written file behind.
+ */
+class Profiles {
+    private static Logger log = Logger.getLogger("Profiles");
+    private static final int VERSION = 2;
+
+    private final Path file;
+    private final Map<String, Map<Rectangle, List<PointDir.Integer>>> profiles = new HashMap<>();
+    private final Map<String, List<Barrier>> barriers = new HashMap<>();
+    private final AtomicBoolean savePending = new AtomicBoolean();
+    private final ExecutorService writer = Executors.newSingleThreadExecutor(r -> {
+        Thread t = new Thread(r, "profile-writer");
+        t.setDaemon(true);
+        return t;
+    });
+
+    Profiles(Path file) {
+        this.file = file;
+    }
+
+    static Path defaultFile() {
+        return Paths.get(System.getProperty("user.home"), ".stickycorners", "profiles.bin");
+    }
+
+    /**
+     * @return a key that is the same for any two lists holding the same screens, in any order
+     */
+    static String fingerprint(Collection<Rectangle> screens) {
+        List<Rectangle> sorted = new ArrayList<>(screens);
+        sorted.sort(Comparator.<Rectangle>comparingInt(r -> r.x).thenComparingInt(r -> r.y)
+                .thenComparingInt(r -> r.width).thenComparingInt(r -> r.height));
+        long hash = 1125899906842597L;
+        for (Rectangle r : sorted) {
+            hash = 31 * hash + r.x;
+            hash = 31 * hash + r.y;
+            hash = 31 * hash + r.width;
+            hash = 31 * hash + r.height;
+        }
+        return sorted.size() + "-" + Long.toHexString(hash);
+    }
+
+    synchronized void load() {
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file)))) {
+            int version = in.readInt();
+            if (version != 1 && version != VERSION) {
+                log.warning(() -> "Ignoring profiles saved by another version: " + file);
+                return;
+            }
+            int count = in.readInt();
+            for (int i = 0; i < count; i++) {
+                String fingerprint = in.readUTF();
+                int screens = in.readInt();
+                Map<Rectangle, List<PointDir.Integer>> profile = new LinkedHashMap<>();
+                for (int s = 0; s < screens; s++) {
+                    Rectangle r = new Rectangle(in.readInt(), in.readInt(), in.readInt(), in.readInt());
+                    int corners = in.readInt();
+                    List<PointDir.Integer> list = new ArrayList<>(corners);
+                    for (int c = 0; c < corners; c++) {
+                        list.add(new PointDir.Integer(in.readInt(), in.readInt(),
+                                Direction.values()[in.readByte()], Corner.values()[in.readByte()], in.readBoolean()));
+                    }
+                    profile.put(r, list);
+                }
+                profiles.put(fingerprint, profile);
+                List<Barrier> edges = new ArrayList<>();
+                for (int b = version == 1 ? 0 : in.readInt(); b > 0; b--) {
+                    edges.add(new Barrier(in.readInt(), in.readInt(), in.readInt(),
+                            Direction.values()[in.readByte()], in.readBoolean()));
+                }
+                barriers.put(fingerprint, edges);
+            }
+            log.info(() -> "Loaded " + profiles.size() + " screen layout profiles");
+        } catch (NoSuchFileException e) {
+            // nothing saved yet
+        } catch (IOException | RuntimeException e) {
+            log.severe(() -> "Could not read profiles from " + file + ": " + e.getMessage());
+        }
+    }
+
+    /**
+     * @return copies of the corners saved for each screen of the layout, in desktop coordinates,
+     * or null if the layout hasn't been seen before
+     */
+    synchronized Map<Rectangle, List<PointDir.Integer>> get(String fingerprint) {
+        Map<Rectangle, List<PointDir.Integer>> profile = profiles.get(fingerprint);
+        return profile == null ? null : copy(profile, 0, 0);
+    }
+
+    /**
+     * @return the barriers saved for the layout, in desktop coordinates, or null if the layout
+     * hasn't been seen before
+     */
+    synchronized List<Barrier> getBarriers(String fingerprint) {
+        List<Barrier> saved = barriers.get(fingerprint);
+        return saved == null ? null : new ArrayList<>(saved);
+    }
+
+    /**
+     * Remembers the corners of each screen of a layout, and the barriers along its edges, and
+     * saves them in the background.
+     *
+     * @param corners  corners per screen, relative to ({@code originX}, {@code originY})
+     * @param barriers relative to ({@code originX}, {@code originY})
+     */
+    synchronized void put(String fingerprint, Map<Rectangle, List<PointDir.Integer>> corners, List<Barrier> barriers,
+                          int originX, int originY) {
+        profiles.put(fingerprint, copy(corners, originX, originY));
+        List<Barrier> moved = new ArrayList<>(barriers.size());
+        for (Barrier b : barriers) {
+            moved.add(b.translate(originX, originY));
+        }
+        this.barriers.put(fingerprint, moved);
+        if (savePending.compareAndSet(false, true)) {
+            writer.execute(this::save);
+        }
+    }
+
+    private static Map<Rectangle, List<PointDir.Integer>> copy(Map<Rectangle, List<PointDir.Integer>> corners, int dx, int dy) {
+        Map<Rectangle, List<PointDir.Integer>> copy = new LinkedHashMap<>();
+        for (Map.Entry<Rectangle, List<PointDir.Integer>> e : corners.entrySet()) {
+            List<PointDir.Integer> list = new ArrayList<>(e.getValue().size());
+            for (PointDir.Integer p : e.getValue()) {
+                list.add(new PointDir.Integer(p.x + dx, p.y + dy, p.direction, p.corner, p.enabled));
+            }
+            copy.put(new Rectangle(e.getKey()), list);
+        }
+        return copy;
+    }
+
+    private void save() {
+        savePending.set(false);
+        Map<String, Map<Rectangle, List<PointDir.Integer>>> snapshot = new HashMap<>();
+        Map<String, List<Barrier>> barrierSnapshot = new HashMap<>();
+        synchronized (this) {
+            for (Map.Entry<String, Map<Rectangle, List<PointDir.Integer>>> e : profiles.entrySet()) {
+                snapshot.put(e.getKey(), copy(e.getValue(), 0, 0));
+            }
+            barrierSnapshot.putAll(barriers);
+        }
+        try {
+            Files.createDirectories(file.getParent());
+            Path tmp = Files.createTempFile(file.getParent(), "profiles", ".tmp");
+            try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(tmp)))) {
+                out.writeInt(VERSION);
+                out.writeInt(snapshot.size());
+                for (Map.Entry<String, Map<Rectangle, List<PointDir.Integer>>> e : snapshot.entrySet()) {
+                    out.writeUTF(e.getKey());
+                    out.writeInt(e.getValue().size());
+                    for (Map.Entry<Rectangle, List<PointDir.Integer>> s : e.getValue().entrySet()) {
+                        Rectangle r = s.getKey();
+                        out.writeInt(r.x);
+                        out.writeInt(r.y);
+                        out.writeInt(r.width);
+                        out.writeInt(r.height);
+                        out.writeInt(s.getValue().size());
+                        for (PointDir.Integer p : s.getValue()) {
+                            out.writeInt(p.x);
+                            out.writeInt(p.y);
+                            out.writeByte(p.direction.ordinal());
+                            out.writeByte(p.corner.ordinal());
+                            out.writeBoolean(p.enabled);
+                        }
+                    }
+                    List<Barrier> edges = barrierSnapshot.getOrDefault(e.getKey(), new ArrayList<>());
+                    out.writeInt(edges.size());
+                    for (Barrier b : edges) {
+                        out.writeInt(b.line);
+                        out.writeInt(b.from);
+                        out.writeInt(b.to);
+                        out.writeByte(b.direction.ordinal());
+                        out.writeBoolean(b.sticky);
+                    }
+                }
+            }
+            try {
+                Files.move(tmp, file, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            } catch (IOException e) {
+                Files.deleteIfExists(tmp);
+                throw e;
+            }
+        } catch (IOException e) {
+            log.severe(() -> "Could not save profiles to " + file + ": " + e.getMessage());
+        }
+    }
+}
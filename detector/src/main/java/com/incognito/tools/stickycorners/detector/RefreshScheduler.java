@@ -0,0 +1,229 @@
+package com.incognito.tools.stickycorners.detector;
+
+import com.incognito.tools.stickycorners.detector.probe.TimedScreenProbe;
+
+import java.awt.Rectangle;
+import java.util.Arrays;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.logging.Logger;
+
+/**
+ * The one thread that reads the screen layout and restarts the detector when it changes, for
+ * refreshes asked for from the tray and automatic ones alike.
+ * <p>
+ * Requested refreshes wait out {@link #DEBOUNCE} first, and any asked for in the meantime are
+ * folded into the same one, so a burst of clicks or a dock going through several layouts costs a
+ * single probe and at most one restart. A request also supersedes whatever probe is in flight: it
+ * is interrupted if it can be and its result thrown away. Automatic refreshes probe every
+ * interval, or, with a probe that watches for changes, wait for one and then request a refresh
+ * like the tray does. The interval can be changed while running.
+ * <p>
+ * A probe that fails, finding no screens, leaves the detector on the last layout that was read
+ * successfully and is tried again after a delay that doubles with every failure in a row, from
+ * {@link #RETRY_MIN} up to {@link #RETRY_MAX}. Retries carry on while auto-refresh is on, or
+ * until a layout is first read; if {@link #FIRST_ATTEMPTS} in a row fail before that, there is
+ * nothing to protect and the scheduler gives up.
+ */
+class RefreshScheduler {
+    private static Logger log = Logger.getLogger("RefreshScheduler");
+    static final long DEBOUNCE = 250;
+    static final long RETRY_MIN = TimeUnit.SECONDS.toMillis(1);
+    static final long RETRY_MAX = TimeUnit.MINUTES.toMillis(1);
+    static final int FIRST_ATTEMPTS = 4;
+
+    private final TimedScreenProbe probe;
+    private final Consumer<Rectangle[]> restart;
+    private final Runnable noScreens;
+    private final DetectorMetrics metrics;
+    private final ScheduledExecutorService executor = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread t = new Thread(r, "layout-refresh");
+        t.setDaemon(true);
+        return t;
+    });
+
+    private volatile Rectangle[] current;
+    private int failures;
+    private boolean autoRefresh;
+    private long intervalMillis;
+    private Future<?> pending;
+    private Future<?> auto;
+    private Future<?> running;
+
+    /**
+     * @param restart   called on the refresh thread with every layout that differs from the last
+     * @param noScreens called if no layout could be read after {@link #FIRST_ATTEMPTS} tries
+     */
+    RefreshScheduler(TimedScreenProbe probe, long intervalSeconds, Consumer<Rectangle[]> restart, Runnable noScreens,
+                     DetectorMetrics metrics) {
+        this.probe = probe;
+        this.restart = restart;
+        this.noScreens = noScreens;
+        this.metrics = metrics;
+        this.intervalMillis = TimeUnit.SECONDS.toMillis(intervalSeconds);
+    }
+
+    /**
+     * Probes straight away, without waiting out the debounce.
+     */
+    synchronized void start() {
+        pending = executor.submit(this::requested);
+    }
+
+    /**
+     * Probes the layout once {@link #DEBOUNCE} has passed, unless a refresh is already waiting to.
+     */
+    synchronized void requestRefresh() {
+        if (pending != null) {
+            metrics.recordCoalescedRefresh();
+            return;
+        }
+        if (running != null) {
+            running.cancel(true);
+            metrics.recordCancelledProbe();
+        }
+        if (auto != null) {
+            auto.cancel(false);
+            auto = null;
+        }
+        pending = executor.schedule(this::requested, DEBOUNCE, TimeUnit.MILLISECONDS);
+    }
+
+    synchronized void setAutoRefresh(boolean autoRefresh) {
+        this.autoRefresh = autoRefresh;
+        if (autoRefresh) {
+            scheduleAuto();
+        } else if (auto != null) {
+            log.info("Stopping auto-refresh");
+            auto.cancel(true);
+            auto = null;
+        }
+    }
+
+    synchronized void setInterval(long seconds) {
+        intervalMillis = TimeUnit.SECONDS.toMillis(seconds);
+        if (auto != null) {
+            auto.cancel(true);
+            auto = null;
+        }
+        scheduleAuto();
+    }
+
+    synchronized void close() {
+        autoRefresh = false;
+        executor.shutdownNow();
+    }
+
+    /**
+     * Schedules the next automatic refresh, or the next retry if the last probe failed.
+     */
+    private synchronized void scheduleAuto() {
+        boolean retry = failures > 0 && (autoRefresh || current == null);
+        if (!autoRefresh && !retry || pending != null || executor.isShutdown()) {
+            return;
+        }
+        if (auto != null) {
+            auto.cancel(false);
+        }
+        long delay = retry ? Math.min(RETRY_MAX, RETRY_MIN << Math.min(failures - 1, 16))
+                : probe.isWatching() ? 0 : intervalMillis;
+        auto = executor.schedule(this::auto, delay, TimeUnit.MILLISECONDS);
+    }
+
+    private void requested() {
+        synchronized (this) {
+            running = pending;
+            pending = null;
+        }
+        try {
+            Rectangle[] screens = probe();
+            if (!Thread.currentThread().isInterrupted()) {
+                apply(screens);
+            }
+        } finally {
+            synchronized (this) {
+                running = null;
+            }
+            scheduleAuto();
+        }
+    }
+
+    private void auto() {
+        synchronized (this) {
+            running = auto;
+        }
+        boolean changed = false;
+        try {
+            if (probe.isWatching() && failures == 0) {
+                Rectangle[] seen = probe.awaitChange(current, intervalMillis);
+                changed = seen.length > 0 && !Arrays.equals(seen, current);
+            } else {
+                Rectangle[] screens = probe();
+                if (!Thread.currentThread().isInterrupted()) {
+                    apply(screens);
+                }
+            }
+        } catch (InterruptedException e) {
+            // superseded by a request, or auto-refresh was switched off or retimed
+        } finally {
+            synchronized (this) {
+                running = null;
+            }
+        }
+        if (changed) {
+            requestRefresh();
+        } else {
+            scheduleAuto();
+        }
+    }
+
+    private Rectangle[] probe() {
+        Rectangle[] screens;
+        FlightEvents.Probe event = new FlightEvents.Probe();
+        event.begin();
+        try {
+            screens = probe.probe();
+        } catch (RuntimeException e) {
+            log.severe(() -> "Probe " + probe.getName() + " failed: " + e);
+            event.commit(probe.getName(), 0);
+            return new Rectangle[0];
+        }
+        event.commit(probe.getName(), screens.length);
+        log.fine(() -> "Probed " + screens.length + " screens with " + probe.getName() + " in " + probe.getLastMicros() + "us");
+        return screens;
+    }
+
+    private void apply(Rectangle[] screens) {
+        if (screens.length == 0) {
+            int failed;
+            synchronized (this) {
+                failed = ++failures;
+            }
+            if (current == null && failed >= FIRST_ATTEMPTS) {
+                log.severe("Can't start auto-refresh thread");
+                noScreens.run();
+                close();
+            } else {
+                log.warning(() -> "Could not read the screen layout (" + failed + " in a row), "
+                        + (current == null ? "retrying" : "keeping the last one"));
+            }
+            return;
+        }
+        synchronized (this) {
+            failures = 0;
+        }
+        if (current != null && Arrays.equals(current, screens)) {
+            return;
+        }
+        if (current != null) {
+            log.info(screens.length != current.length
+                    ? "Detected change in screen environment, restarting..."
+                    : "Detected change in screen orientations, restarting...");
+        }
+        current = screens;
+        restart.accept(screens);
+    }
+}
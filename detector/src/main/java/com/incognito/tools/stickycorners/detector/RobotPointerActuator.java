@@ -0,0 +1,19 @@
+package com.incognito.tools.stickycorners.detector;
+
+import java.awt.Robot;
+
+/**
+ * Moves the real pointer with a {@link Robot}.
+ */
+class RobotPointerActuator implements PointerActuator {
+    private final Robot robot;
+
+    RobotPointerActuator(Robot robot) {
+        this.robot = robot;
+    }
+
+    @Override
+    public void moveTo(int x, int y) {
+        robot.mouseMove(x, y);
+    }
+}
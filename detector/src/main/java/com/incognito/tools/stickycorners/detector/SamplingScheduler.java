@@ -0,0 +1,122 @@
+package com.incognito.tools.stickycorners.detector;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Picks how long the detector should wait before sampling the pointer again.
+ * <p>
+ * The wait is roughly half the time the pointer needs to reach the nearest enabled corner at its
+ * recent speed, clamped to {@code [minInterval, maxInterval]}. While the pointer isn't moving the
+ * wait doubles each sample until it reaches {@code maxInterval}.
+ */
+public class SamplingScheduler {
+    public static final long DEFAULT_MIN_INTERVAL = 5;
+    public static final long DEFAULT_MAX_INTERVAL = 250;
+
+    private volatile long[] bounds;
+
+    private long interval;
+    private long lastTime;
+    private int lastX;
+    private int lastY;
+    private double speed;
+    private boolean sampled;
+
+    private long windowStart;
+    private int windowSamples;
+    private volatile int samplesPerSecond;
+
+    /**
+     * @param minInterval shortest wait between samples, in milliseconds
+     * @param maxInterval longest wait between samples, in milliseconds
+     */
+    public SamplingScheduler(long minInterval, long maxInterval) {
+        setIntervals(minInterval, maxInterval);
+        this.interval = getMinInterval();
+    }
+
+    /**
+     * Changes the shortest and longest waits between samples, from the next sample on. Both are
+     * published together, so a sample never sees one without the other.
+     */
+    public void setIntervals(long minInterval, long maxInterval) {
+        long min = Math.max(1, minInterval);
+        bounds = new long[]{min, Math.max(min, maxInterval)};
+    }
+
+    /**
+     * Records a sample and returns the wait until the next one.
+     *
+     * @param x        pointer x
+     * @param y        pointer y
+     * @param distance distance from the pointer to the nearest enabled corner, or anything from
+     *                 {@link #reach} up if that corner is further
+     * @return milliseconds to wait before sampling again
+     */
+    long next(int x, int y, int distance) {
+        long now = System.nanoTime();
+        countSample(now);
+        long[] bounds = this.bounds;
+        long minInterval = bounds[0];
+        long maxInterval = bounds[1];
+
+        int moved = Math.max(Math.abs(x - lastX), Math.abs(y - lastY));
+        if (!sampled) {
+            sampled = true;
+            interval = minInterval;
+        } else if (moved == 0) {
+            speed = 0;
+            interval = Math.min(maxInterval, interval * 2);
+        } else {
+            double elapsed = Math.max(1, TimeUnit.NANOSECONDS.toMillis(now - lastTime));
+            speed = (speed + moved / elapsed) / 2;
+            double arrival = distance / speed;
+            interval = Math.max(minInterval, Math.min(maxInterval, (long) (arrival / 2)));
+        }
+
+        lastTime = now;
+        lastX = x;
+        lastY = y;
+        return interval;
+    }
+
+    /**
+     * @return how far away a corner can be and still change the wait {@link #next} picks for a
+     * sample at ({@code x}, {@code y}) taken from now on: past it the wait is {@code maxInterval}
+     * anyway. It is 0 while the pointer holds still, when the distance doesn't matter at all.
+     */
+    int reach(int x, int y) {
+        int moved = Math.max(Math.abs(x - lastX), Math.abs(y - lastY));
+        if (!sampled || moved == 0) {
+            return 0;
+        }
+        // next sees at least this much time gone by, so a speed no higher
+        double elapsed = Math.max(1, TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - lastTime));
+        double speed = (this.speed + moved / elapsed) / 2;
+        return (int) Math.min(Integer.MAX_VALUE, Math.ceil(2 * bounds[1] * speed) + 1);
+    }
+
+    private void countSample(long now) {
+        if (now - windowStart >= TimeUnit.SECONDS.toNanos(1)) {
+            samplesPerSecond = windowSamples;
+            windowSamples = 0;
+            windowStart = now;
+        }
+        windowSamples++;
+    }
+
+    /**
+     * @return samples taken during the last full second
+     */
+    public int getSamplesPerSecond() {
+        return samplesPerSecond;
+    }
+
+    public long getMinInterval() {
+        return bounds[0];
+    }
+
+    public long getMaxInterval() {
+        return bounds[1];
+    }
+}
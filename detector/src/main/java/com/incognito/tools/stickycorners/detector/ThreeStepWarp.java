@@ -0,0 +1,22 @@
+package com.incognito.tools.stickycorners.detector;
+
+/**
+ * Takes the pointer a few pixels into its screen, across the boundary and back along it. Works
+ * even where the platform won't move the pointer straight past a corner, at the cost of three
+ * moves.
+ */
+class ThreeStepWarp implements WarpStrategy {
+    static final String NAME = "three-step";
+
+    @Override
+    public void warp(int[] path, PointerActuator actuator) {
+        for (int p = 0; p < path.length; p += 2) {
+            actuator.moveTo(path[p], path[p + 1]);
+        }
+    }
+
+    @Override
+    public String getName() {
+        return NAME;
+    }
+}
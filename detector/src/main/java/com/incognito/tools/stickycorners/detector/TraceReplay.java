@@ -0,0 +1,105 @@
+package com.incognito.tools.stickycorners.detector;
+
+import java.io.IOException;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Feeds a trace saved from the tray menu back through the detector's decisions, without a screen,
+ * and reports where they differ from the ones made when it was recorded.
+ * <p>
+ * Usage: {@code java -cp detector.jar com.incognito.tools.stickycorners.detector.TraceReplay
+ * <trace> [repeat]}. Repeating the replay gives a steadier figure for the time spent per sample.
+ */
+public class TraceReplay {
+    private static final int REPORTED_MISMATCHES = 20;
+
+    final int samples;
+    final int recordedWarps;
+    final int replayedWarps;
+    final int mismatches;
+    final List<String> firstMismatches;
+    final long nanos;
+
+    private TraceReplay(int samples, int recordedWarps, int replayedWarps, int mismatches,
+                        List<String> firstMismatches, long nanos) {
+        this.samples = samples;
+        this.recordedWarps = recordedWarps;
+        this.replayedWarps = replayedWarps;
+        this.mismatches = mismatches;
+        this.firstMismatches = firstMismatches;
+        this.nanos = nanos;
+    }
+
+    /**
+     * Replays {@code recording} against the corners and barriers it was recorded with. The first sample only
+     * primes the tracker, since the one before it, which it was decided against, is gone.
+     */
+    static TraceReplay replay(PointerTrace.Recording recording) {
+        CornerIndex index = new CornerIndex(recording.corners, recording.barriers, recording.bounds);
+        PointerTracker tracker = new PointerTracker();
+        int recordedWarps = 0;
+        int replayedWarps = 0;
+        int mismatches = 0;
+        List<String> firstMismatches = new ArrayList<>();
+        long start = System.nanoTime();
+        for (int s = 0; s < recording.size(); s++) {
+            int decision = tracker.sample(index, recording.x[s], recording.y[s]);
+            if (s == 0) {
+                continue;
+            }
+            int recorded = recording.decisions[s];
+            if (recorded >= 0) {
+                recordedWarps++;
+            }
+            if (decision >= 0) {
+                replayedWarps++;
+            }
+            if (decision != recorded) {
+                mismatches++;
+                if (firstMismatches.size() < REPORTED_MISMATCHES) {
+                    firstMismatches.add("sample " + s + " at " + recording.x[s] + "," + recording.y[s]
+                            + " (+" + recording.nanos[s] / 1_000_000 + "ms): recorded " + describe(index, recorded)
+                            + ", replayed " + describe(index, decision));
+                }
+            }
+        }
+        return new TraceReplay(recording.size(), recordedWarps, replayedWarps, mismatches, firstMismatches,
+                System.nanoTime() - start);
+    }
+
+    private static String describe(CornerIndex index, int i) {
+        if (i < 0) {
+            return "no warp";
+        }
+        return "warp at " + index.describe(i);
+    }
+
+    public static void main(String[] args) throws IOException {
+        if (args.length == 0) {
+            System.out.println("Usage: TraceReplay <trace> [repeat]");
+            return;
+        }
+        PointerTrace.Recording recording = PointerTrace.Recording.read(Paths.get(args[0]));
+        int repeat = args.length > 1 ? Math.max(1, Integer.parseInt(args[1])) : 1;
+        System.out.println("Replaying " + recording.size() + " samples against " + recording.corners.size()
+                + " corners and " + recording.barriers.size() + " barriers on " + recording.bounds.width + "x" + recording.bounds.height);
+
+        TraceReplay result = null;
+        long best = Long.MAX_VALUE;
+        for (int r = 0; r < repeat; r++) {
+            result = replay(recording);
+            best = Math.min(best, result.nanos);
+        }
+        System.out.println("Warps recorded: " + result.recordedWarps + ", replayed: " + result.replayedWarps);
+        System.out.println("Decisions that differ: " + result.mismatches);
+        for (String line : result.firstMismatches) {
+            System.out.println("  " + line);
+        }
+        if (result.mismatches > result.firstMismatches.size()) {
+            System.out.println("  ...");
+        }
+        System.out.println("Time per sample: " + (result.samples == 0 ? 0 : best / result.samples) + "ns");
+    }
+}
@@ -0,0 +1,117 @@
+package com.incognito.tools.stickycorners.detector;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+import java.util.logging.Logger;
+
+/**
+ * Tries each warp strategy on a real corner and picks the fastest one that leaves the pointer
+ * where it should be.
+ * <p>
+ * The pointer is put on the corner, warped across it, and watched until it reports the end of
+ * the path, a few times over per strategy; the median of those times is what's compared. A
+ * strategy that doesn't get the pointer there within {@link #SETTLE} doesn't work on this
+ * platform and isn't picked. The pointer is put back where it was afterwards.
+ */
+class WarpCalibration {
+    private static Logger log = Logger.getLogger("WarpCalibration");
+    static final int ROUNDS = 5;
+    static final long SETTLE = TimeUnit.MILLISECONDS.toNanos(50);
+
+    private final PointerSource source;
+    private final PointerActuator actuator;
+    private final int[] position = new int[2];
+
+    WarpCalibration(PointerSource source, PointerActuator actuator) {
+        this.source = source;
+        this.actuator = actuator;
+    }
+
+    /**
+     * @param candidates strategies to try, the first of which is used if none can be tried or
+     *                   none works
+     */
+    WarpStrategy pick(CornerIndex index, List<WarpStrategy> candidates) {
+        WarpStrategy fallback = candidates.get(0);
+        int piece = index.pieces() > 0 ? 0 : -1;
+        if (piece < 0 || !source.locate(position)) {
+            log.info(() -> "No corner to calibrate warps on, using " + fallback.getName());
+            return fallback;
+        }
+        int homeX = position[0];
+        int homeY = position[1];
+        int x = index.pieceX(piece);
+        int y = index.pieceY(piece);
+        int[] path = new int[6];
+        index.path(piece, x, y, x, y, path);
+
+        WarpStrategy best = null;
+        long bestNanos = Long.MAX_VALUE;
+        try {
+            for (WarpStrategy strategy : candidates) {
+                long nanos = measure(strategy, x, y, path);
+                if (nanos < 0) {
+                    log.info(() -> "Warp " + strategy.getName() + " doesn't reach the next screen here");
+                } else {
+                    log.info(() -> "Warp " + strategy.getName() + " takes " + TimeUnit.NANOSECONDS.toMicros(nanos) + "us");
+                    if (nanos < bestNanos) {
+                        best = strategy;
+                        bestNanos = nanos;
+                    }
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            actuator.moveTo(homeX, homeY);
+        }
+        WarpStrategy picked = best == null ? fallback : best;
+        log.info(() -> "Warping with " + picked.getName());
+        return picked;
+    }
+
+    /**
+     * @return median time for {@code strategy} to get the pointer from ({@code x}, {@code y}) to
+     * the end of {@code path}, or -1 if it didn't get there every time
+     */
+    private long measure(WarpStrategy strategy, int x, int y, int[] path) throws InterruptedException {
+        long[] rounds = new long[ROUNDS];
+        for (int r = 0; r < ROUNDS; r++) {
+            actuator.moveTo(x, y);
+            if (await(x, y) < 0) {
+                return -1;
+            }
+            long start = System.nanoTime();
+            strategy.warp(path, actuator);
+            long reached = await(path[path.length - 2], path[path.length - 1]);
+            if (reached < 0) {
+                return -1;
+            }
+            rounds[r] = reached - start;
+        }
+        Arrays.sort(rounds);
+        return rounds[ROUNDS / 2];
+    }
+
+    /**
+     * @return {@link System#nanoTime} when the pointer was first seen at ({@code x}, {@code y}),
+     * or -1 if it wasn't within {@link #SETTLE}
+     */
+    private long await(int x, int y) throws InterruptedException {
+        long deadline = System.nanoTime() + SETTLE;
+        while (true) {
+            if (source.locate(position) && position[0] == x && position[1] == y) {
+                return System.nanoTime();
+            }
+            if (System.nanoTime() > deadline) {
+                return -1;
+            }
+            if (Thread.interrupted()) {
+                throw new InterruptedException();
+            }
+            LockSupport.parkNanos(TimeUnit.MICROSECONDS.toNanos(100));
+        }
+    }
+}
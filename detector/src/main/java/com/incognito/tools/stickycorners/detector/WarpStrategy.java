@@ -0,0 +1,34 @@
+package com.incognito.tools.stickycorners.detector;
+
+/**
+ * How the pointer is moved across a corner it got stuck on.
+ */
+interface WarpStrategy {
+    String AUTO = "auto";
+
+    /**
+     * Moves the pointer along, or straight to the end of, {@code path}: the three positions
+     * {@link CornerIndex#path} works out, the last of which is where it should end up.
+     */
+    void warp(int[] path, PointerActuator actuator);
+
+    /**
+     * @return short name used in logs and on the command line
+     */
+    String getName();
+
+    /**
+     * @param name one of {@code three-step} or {@code direct}
+     * @return the strategy with that name, or null for any other name, {@code auto} included
+     */
+    static WarpStrategy named(String name) {
+        switch (name) {
+            case ThreeStepWarp.NAME:
+                return new ThreeStepWarp();
+            case DirectWarp.NAME:
+                return new DirectWarp();
+            default:
+                return null;
+        }
+    }
+}
@@ -0,0 +1,149 @@
+package com.incognito.tools.stickycorners.detector.graphics;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * A stretch of boundary between two screens that the detector treats the same all along, instead
+ * of only looking at the few pixels next to a corner. A sticky barrier takes the pointer across
+ * wherever it gets held up on it; a pass-through one is left alone, even where a corner would
+ * otherwise take it across.
+ * <p>
+ * {@code line} is the column, for a boundary crossed moving left or right, or the row, for one
+ * crossed moving up or down, of the last pixels on the screen the pointer leaves, and
+ * {@code direction} is the way it crosses. The barrier covers {@code [from, to]} along the line.
+ * Barriers are immutable; edits make new ones.
+ */
+public final class Barrier {
+    /**
+     * Orders barriers by the way they're crossed, then by line, then along it.
+     */
+    private static final Comparator<Barrier> ALONG = Comparator.<Barrier, Direction>comparing(b -> b.direction)
+            .thenComparingInt(b -> b.line)
+            .thenComparingInt(b -> b.from);
+
+    public final int line;
+    public final int from;
+    public final int to;
+    public final Direction direction;
+    public final boolean sticky;
+
+    public Barrier(int line, int from, int to, Direction direction, boolean sticky) {
+        this.line = line;
+        this.from = Math.min(from, to);
+        this.to = Math.max(from, to);
+        this.direction = direction;
+        this.sticky = sticky;
+    }
+
+    /**
+     * @return whether the pointer crosses this barrier moving left or right
+     */
+    public boolean isHorizontalCrossing() {
+        return direction == Direction.LEFT || direction == Direction.RIGHT;
+    }
+
+    /**
+     * @return the way along the line's axis that crossing moves the pointer, -1 or 1
+     */
+    public int step() {
+        return direction == Direction.LEFT || direction == Direction.UP ? -1 : 1;
+    }
+
+    /**
+     * @return whether {@code other} lies on the same line and is crossed the same way
+     */
+    public boolean sameEdge(Barrier other) {
+        return line == other.line && direction == other.direction;
+    }
+
+    public Barrier translate(int dx, int dy) {
+        int along = isHorizontalCrossing() ? dy : dx;
+        return new Barrier(line + (isHorizontalCrossing() ? dx : dy), from + along, to + along, direction, sticky);
+    }
+
+    /**
+     * @return {@code barriers} with {@code edit} laid over them: whatever they had on its edge
+     * within its stretch is cut away first, so no two barriers ever overlap
+     */
+    public static List<Barrier> apply(List<Barrier> barriers, Barrier edit) {
+        List<Barrier> next = clear(barriers, edit, edit.from, edit.to);
+        next.add(edit);
+        return next;
+    }
+
+    /**
+     * @return {@code barriers} without anything on the same edge as {@code edge} within
+     * {@code [from, to]}, cutting those that only partly overlap it
+     */
+    public static List<Barrier> clear(List<Barrier> barriers, Barrier edge, int from, int to) {
+        List<Barrier> next = new ArrayList<>(barriers.size() + 1);
+        for (Barrier b : barriers) {
+            if (!b.sameEdge(edge) || b.to < from || b.from > to) {
+                next.add(b);
+                continue;
+            }
+            if (b.from < from) {
+                next.add(new Barrier(b.line, b.from, from - 1, b.direction, b.sticky));
+            }
+            if (b.to > to) {
+                next.add(new Barrier(b.line, to + 1, b.to, b.direction, b.sticky));
+            }
+        }
+        return next;
+    }
+
+    /**
+     * @return the parts of {@code barriers} that still lie on one of {@code edges}, for carrying
+     * barriers over to a changed layout. No two of {@code edges} may overlap; each barrier finds
+     * the first edge it reaches by a binary search over them sorted along their lines.
+     */
+    public static List<Barrier> clip(List<Barrier> barriers, List<Barrier> edges) {
+        Barrier[] sorted = edges.toArray(new Barrier[0]);
+        Arrays.sort(sorted, ALONG);
+        List<Barrier> clipped = new ArrayList<>();
+        for (Barrier b : barriers) {
+            // the first edge on b's line that doesn't end before b starts
+            int lo = 0;
+            int hi = sorted.length;
+            while (lo < hi) {
+                int mid = (lo + hi) >>> 1;
+                Barrier e = sorted[mid];
+                int c = e.direction != b.direction ? e.direction.compareTo(b.direction)
+                        : e.line != b.line ? Integer.compare(e.line, b.line) : Integer.compare(e.to, b.from);
+                if (c < 0) {
+                    lo = mid + 1;
+                } else {
+                    hi = mid;
+                }
+            }
+            for (int i = lo; i < sorted.length && b.sameEdge(sorted[i]) && sorted[i].from <= b.to; i++) {
+                Barrier e = sorted[i];
+                clipped.add(new Barrier(b.line, Math.max(b.from, e.from), Math.min(b.to, e.to), b.direction, b.sticky));
+            }
+        }
+        return clipped;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (!(o instanceof Barrier)) {
+            return false;
+        }
+        Barrier b = (Barrier) o;
+        return line == b.line && from == b.from && to == b.to && direction == b.direction && sticky == b.sticky;
+    }
+
+    @Override
+    public int hashCode() {
+        return ((line * 31 + from) * 31 + to) * 31 + direction.ordinal() * 2 + (sticky ? 1 : 0);
+    }
+
+    @Override
+    public String toString() {
+        return (sticky ? "sticky " : "pass-through ") + direction + " across "
+                + (isHorizontalCrossing() ? "x=" + line + ", y=" : "y=" + line + ", x=") + from + ".." + to;
+    }
+}
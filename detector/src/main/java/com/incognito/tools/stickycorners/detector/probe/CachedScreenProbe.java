@@ -0,0 +1,46 @@
+package com.incognito.tools.stickycorners.detector.probe;
+
+import java.awt.Rectangle;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Remembers the last layout read by another probe and hands out copies of it until it expires.
+ */
+public class CachedScreenProbe implements ScreenProbe {
+    public static final String NAME = "cached";
+    static final long DEFAULT_TTL = TimeUnit.SECONDS.toMillis(1);
+
+    private final ScreenProbe delegate;
+    private final long ttlNanos;
+
+    private Rectangle[] cached;
+    private long cachedAt;
+
+    public CachedScreenProbe(ScreenProbe delegate, long ttlMillis) {
+        this.delegate = delegate;
+        this.ttlNanos = TimeUnit.MILLISECONDS.toNanos(ttlMillis);
+    }
+
+    @Override
+    public synchronized Rectangle[] probe() {
+        long now = System.nanoTime();
+        if (cached == null || now - cachedAt >= ttlNanos) {
+            cached = delegate.probe();
+            cachedAt = now;
+        }
+        Rectangle[] copy = new Rectangle[cached.length];
+        for (int i = 0; i < copy.length; i++) {
+            copy[i] = new Rectangle(cached[i]);
+        }
+        return copy;
+    }
+
+    public synchronized void invalidate() {
+        cached = null;
+    }
+
+    @Override
+    public String getName() {
+        return NAME + "(" + delegate.getName() + ")";
+    }
+}
@@ -0,0 +1,40 @@
+package com.incognito.tools.stickycorners.detector.probe;
+
+import java.awt.GraphicsDevice;
+import java.awt.GraphicsEnvironment;
+import java.awt.HeadlessException;
+import java.awt.Rectangle;
+
+/**
+ * Reads the screen layout from this JVM's own graphics environment, which AWT keeps up to date
+ * as displays are added, removed or moved.
+ */
+public class InProcessScreenProbe implements ScreenProbe {
+    public static final String NAME = "inprocess";
+
+    static boolean isAvailable() {
+        if (GraphicsEnvironment.isHeadless()) {
+            return false;
+        }
+        try {
+            return GraphicsEnvironment.getLocalGraphicsEnvironment().getScreenDevices().length > 0;
+        } catch (HeadlessException e) {
+            return false;
+        }
+    }
+
+    @Override
+    public Rectangle[] probe() {
+        GraphicsDevice[] devices = GraphicsEnvironment.getLocalGraphicsEnvironment().getScreenDevices();
+        Rectangle[] screens = new Rectangle[devices.length];
+        for (int i = 0; i < devices.length; i++) {
+            screens[i] = devices[i].getDefaultConfiguration().getBounds();
+        }
+        return screens;
+    }
+
+    @Override
+    public String getName() {
+        return NAME;
+    }
+}
@@ -0,0 +1,71 @@
+package com.incognito.tools.stickycorners.detector.probe;
+
+import java.awt.Rectangle;
+
+/**
+ * Source of the current screen layout.
+ */
+public interface ScreenProbe {
+    /**
+     * @return bounds of every screen, or an empty array if they could not be read
+     */
+    Rectangle[] probe();
+
+    /**
+     * @return short name used in logs and on the command line
+     */
+    String getName();
+
+    /**
+     * Waits until the layout differs from {@code current} or the timeout passes, whichever
+     * comes first, then returns the layout. Probes that can't be notified of changes simply
+     * wait out the timeout and probe again.
+     */
+    default Rectangle[] awaitChange(Rectangle[] current, long timeoutMillis) throws InterruptedException {
+        Thread.sleep(timeoutMillis);
+        return probe();
+    }
+
+    /**
+     * @return whether {@link #awaitChange} returns as soon as the layout changes rather than
+     * polling on the timeout
+     */
+    default boolean isWatching() {
+        return false;
+    }
+
+    /**
+     * Releases anything the probe keeps running in the background.
+     */
+    default void close() {
+    }
+
+    /**
+     * Picks the probe named on the command line, falling back to the subprocess probe if the
+     * requested one can't see any screens from this process. The {@code watch} probe may miss
+     * screens being plugged in or unplugged, see {@link WatchingScreenProbe}.
+     *
+     * @param name            one of {@code inprocess}, {@code cached}, {@code watch} or {@code subprocess}
+     * @param graphicsJarPath folder containing the graphics jar, used by the subprocess probe
+     */
+    static TimedScreenProbe select(String name, String graphicsJarPath) {
+        ScreenProbe fallback = new SubprocessScreenProbe(graphicsJarPath);
+        ScreenProbe selected;
+        switch (name) {
+            case InProcessScreenProbe.NAME:
+                selected = InProcessScreenProbe.isAvailable() ? new InProcessScreenProbe() : fallback;
+                break;
+            case CachedScreenProbe.NAME:
+                selected = new CachedScreenProbe(InProcessScreenProbe.isAvailable() ? new InProcessScreenProbe() : fallback,
+                        CachedScreenProbe.DEFAULT_TTL);
+                break;
+            case WatchingScreenProbe.NAME:
+                selected = new WatchingScreenProbe(graphicsJarPath);
+                break;
+            default:
+                selected = fallback;
+                break;
+        }
+        return new TimedScreenProbe(selected);
+    }
+}
@@ -0,0 +1,86 @@
+package com.incognito.tools.stickycorners.detector.probe;
+
+import java.awt.Rectangle;
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.util.NoSuchElementException;
+import java.util.Scanner;
+import java.util.StringJoiner;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Logger;
+
+/**
+ * Launches the graphics jar in a fresh JVM and reads the layout it prints. A child that hasn't
+ * printed it and exited within the timeout is killed, and so is one whose caller is interrupted
+ * while waiting; either way the probe reports no screens rather than blocking.
+ */
+public class SubprocessScreenProbe implements ScreenProbe {
+    public static final String NAME = "subprocess";
+    static final long DEFAULT_TIMEOUT = TimeUnit.SECONDS.toMillis(5);
+    private static Logger log = Logger.getLogger("SubprocessScreenProbe");
+
+    private final String graphicsJarPath;
+    private final long timeoutMillis;
+
+    public SubprocessScreenProbe(String graphicsJarPath) {
+        this(graphicsJarPath, DEFAULT_TIMEOUT);
+    }
+
+    public SubprocessScreenProbe(String graphicsJarPath, long timeoutMillis) {
+        this.graphicsJarPath = graphicsJarPath;
+        this.timeoutMillis = timeoutMillis;
+    }
+
+    @Override
+    public Rectangle[] probe() {
+        Process proc;
+        try {
+            proc = Runtime.getRuntime().exec(new String[]{"java", "-jar", graphicsJarPath + "graphics-1.0.jar"});
+        } catch (IOException e) {
+            log.severe(() -> "Could not execute process: " + e.getMessage());
+            return new Rectangle[0];
+        }
+        try {
+            if (!proc.waitFor(timeoutMillis, TimeUnit.MILLISECONDS)) {
+                log.warning(() -> "Graphics did not report a layout within " + timeoutMillis + "ms, killing it");
+                return new Rectangle[0];
+            }
+            return read(proc);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return new Rectangle[0];
+        } finally {
+            proc.destroyForcibly();
+        }
+    }
+
+    private static Rectangle[] read(Process proc) {
+        try (Scanner in = new Scanner(new BufferedReader(new InputStreamReader(proc.getInputStream())));
+             BufferedReader errInput = new BufferedReader(new InputStreamReader(proc.getErrorStream()))) {
+            if (!in.hasNext()) {
+                StringJoiner lines = new StringJoiner("\n");
+                String line;
+                while ((line = errInput.readLine()) != null) {
+                    lines.add(line);
+                }
+                log.severe(() -> "No output from graphics: " + lines.toString());
+                return new Rectangle[0];
+            }
+            int numScreens = in.nextInt();
+            Rectangle[] screens = new Rectangle[numScreens];
+            for (int i = 0; i < numScreens; i++) {
+                screens[i] = new Rectangle(in.nextInt(), in.nextInt(), in.nextInt(), in.nextInt());
+            }
+            return screens;
+        } catch (IOException | NoSuchElementException e) {
+            log.severe(() -> "Could not read layout from graphics: " + e);
+            return new Rectangle[0];
+        }
+    }
+
+    @Override
+    public String getName() {
+        return NAME;
+    }
+}
@@ -0,0 +1,86 @@
+package com.incognito.tools.stickycorners.detector.probe;
+
+import java.awt.Rectangle;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Wraps a probe and keeps track of how long its calls take and how many of them fail, by throwing
+ * or by finding no screens.
+ */
+public class TimedScreenProbe implements ScreenProbe {
+    private final ScreenProbe delegate;
+
+    private final AtomicLong count = new AtomicLong();
+    private final AtomicLong totalNanos = new AtomicLong();
+    private final AtomicLong maxNanos = new AtomicLong();
+    private final AtomicLong failures = new AtomicLong();
+    private volatile long lastNanos;
+
+    public TimedScreenProbe(ScreenProbe delegate) {
+        this.delegate = delegate;
+    }
+
+    @Override
+    public Rectangle[] probe() {
+        long start = System.nanoTime();
+        boolean failed = true;
+        try {
+            Rectangle[] screens = delegate.probe();
+            failed = screens.length == 0 && !Thread.currentThread().isInterrupted();
+            return screens;
+        } finally {
+            if (failed) {
+                failures.incrementAndGet();
+            }
+            long elapsed = System.nanoTime() - start;
+            lastNanos = elapsed;
+            count.incrementAndGet();
+            totalNanos.addAndGet(elapsed);
+            maxNanos.accumulateAndGet(elapsed, Math::max);
+        }
+    }
+
+    @Override
+    public Rectangle[] awaitChange(Rectangle[] current, long timeoutMillis) throws InterruptedException {
+        return delegate.isWatching()
+                ? delegate.awaitChange(current, timeoutMillis)
+                : ScreenProbe.super.awaitChange(current, timeoutMillis);
+    }
+
+    @Override
+    public boolean isWatching() {
+        return delegate.isWatching();
+    }
+
+    @Override
+    public void close() {
+        delegate.close();
+    }
+
+    @Override
+    public String getName() {
+        return delegate.getName();
+    }
+
+    public long getCount() {
+        return count.get();
+    }
+
+    public long getFailureCount() {
+        return failures.get();
+    }
+
+    public long getLastMicros() {
+        return TimeUnit.NANOSECONDS.toMicros(lastNanos);
+    }
+
+    public long getMaxMicros() {
+        return TimeUnit.NANOSECONDS.toMicros(maxNanos.get());
+    }
+
+    public long getAverageMicros() {
+        long n = count.get();
+        return n == 0 ? 0 : TimeUnit.NANOSECONDS.toMicros(totalNanos.get() / n);
+    }
+}
@@ -0,0 +1,137 @@
+package com.incognito.tools.stickycorners.detector.probe;
+
+import java.awt.Rectangle;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.util.Arrays;
+import java.util.NoSuchElementException;
+import java.util.Scanner;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Logger;
+
+/**
+ * Keeps one graphics jar running in {@code --watch} mode and reads each layout it reports.
+ * The child is started again if it exits. Its stderr goes to ours, so it can never fill up a pipe
+ * nobody reads and stall the child.
+ * <p>
+ * The child polls {@code getScreenDevices()} inside one long-lived JVM, so it only sees the
+ * changes that JVM's AWT notices. On X11, JDK 8 reads the list of screens once when the toolkit
+ * starts and doesn't update it when a monitor is plugged in or unplugged, so the watcher reports
+ * moved and resized screens but not added or removed ones until the child is restarted. This
+ * hasn't been checked on other platforms or later JDKs. Where hot-plugging matters, use the
+ * {@code subprocess} probe, which starts a fresh JVM for every read.
+ */
+public class WatchingScreenProbe implements ScreenProbe {
+    public static final String NAME = "watch";
+    private static Logger log = Logger.getLogger("WatchingScreenProbe");
+    private static final long RESTART_DELAY = TimeUnit.SECONDS.toMillis(1);
+    private static final long FIRST_LAYOUT_TIMEOUT = TimeUnit.SECONDS.toMillis(10);
+
+    private final String graphicsJarPath;
+    private final Object lock = new Object();
+    private final Thread reader = new Thread(this::run, "graphics-watch");
+
+    private Rectangle[] latest;
+    private Process proc;
+    private volatile boolean closed;
+
+    public WatchingScreenProbe(String graphicsJarPath) {
+        this.graphicsJarPath = graphicsJarPath;
+        reader.setDaemon(true);
+        reader.start();
+    }
+
+    private void run() {
+        while (!closed) {
+            try {
+                Process p = new ProcessBuilder("java", "-jar", graphicsJarPath + "graphics-1.0.jar", "--watch")
+                        .redirectError(ProcessBuilder.Redirect.INHERIT)
+                        .start();
+                synchronized (lock) {
+                    proc = p;
+                }
+                read(p);
+                p.destroy();
+                if (!closed) {
+                    log.warning("Graphics watcher exited, restarting");
+                }
+            } catch (IOException e) {
+                log.severe(() -> "Could not execute process: " + e.getMessage());
+            }
+            try {
+                Thread.sleep(RESTART_DELAY);
+            } catch (InterruptedException e) {
+                return;
+            }
+        }
+    }
+
+    private void read(Process p) {
+        try (Scanner in = new Scanner(new InputStreamReader(p.getInputStream()))) {
+            while (!closed) {
+                int numScreens = in.nextInt();
+                Rectangle[] screens = new Rectangle[numScreens];
+                for (int i = 0; i < numScreens; i++) {
+                    screens[i] = new Rectangle(in.nextInt(), in.nextInt(), in.nextInt(), in.nextInt());
+                }
+                synchronized (lock) {
+                    latest = screens;
+                    lock.notifyAll();
+                }
+            }
+        } catch (NoSuchElementException e) {
+            // stream ended or garbled; the child gets restarted
+        }
+    }
+
+    @Override
+    public Rectangle[] probe() {
+        synchronized (lock) {
+            long deadline = System.currentTimeMillis() + FIRST_LAYOUT_TIMEOUT;
+            long remaining;
+            while (latest == null && (remaining = deadline - System.currentTimeMillis()) > 0) {
+                try {
+                    lock.wait(remaining);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    break;
+                }
+            }
+            return latest == null ? new Rectangle[0] : latest.clone();
+        }
+    }
+
+    @Override
+    public Rectangle[] awaitChange(Rectangle[] current, long timeoutMillis) throws InterruptedException {
+        synchronized (lock) {
+            long deadline = System.currentTimeMillis() + timeoutMillis;
+            long remaining;
+            while ((latest == null || Arrays.equals(latest, current))
+                    && (remaining = deadline - System.currentTimeMillis()) > 0) {
+                lock.wait(remaining);
+            }
+            return latest == null ? new Rectangle[0] : latest.clone();
+        }
+    }
+
+    @Override
+    public boolean isWatching() {
+        return true;
+    }
+
+    @Override
+    public void close() {
+        closed = true;
+        reader.interrupt();
+        synchronized (lock) {
+            if (proc != null) {
+                proc.destroy();
+            }
+        }
+    }
+
+    @Override
+    public String getName() {
+        return NAME;
+    }
+}
@@ -1,6 +1,8 @@
 package com.incognito.tools.stickycorners.detector.settings;
 
 import com.incognito.tools.stickycorners.detector.Detector;
+import com.incognito.tools.stickycorners.detector.graphics.Barrier;
+import com.incognito.tools.stickycorners.detector.graphics.PointDir;
 import com.intellij.uiDesigner.core.GridConstraints;
 import com.intellij.uiDesigner.core.GridLayoutManager;
 
@@ -14,6 +16,8 @@ import java.awt.Dimension;
 import java.awt.Insets;
 import java.awt.event.WindowAdapter;
 import java.awt.event.WindowEvent;
+import java.util.List;
+import java.util.function.LongConsumer;
 
 /**
  * Created by jahorton on 1/2/2019
@@ -26,8 +30,13 @@ public class Form {
     private JSpinner numSeconds;
     private JPanel pnlScreens;
     private JSpinner numFontSize;
+    /**
+     * The {@link Detector#getLayout} that the screens panel shows.
+     */
+    private String layout;
 
     private EmptyConsumer closeListener;
+    private LongConsumer intervalListener;
 
     public Form(long curInterval, Detector detector) {
         this.detector = detector;
@@ -38,6 +47,11 @@ public class Form {
         frame.setTitle("Settings");
 
         numSeconds.setModel(new SpinnerNumberModel(curInterval, 5, 604800, 5));
+        numSeconds.addChangeListener(e -> {
+            if (intervalListener != null) {
+                intervalListener.accept(getDuration());
+            }
+        });
 
         numFontSize.addChangeListener(e -> {
             detector.setDebugFontSize((int) numFontSize.getValue());
@@ -45,7 +59,7 @@ public class Form {
         });
         numFontSize.setModel(new SpinnerNumberModel(detector.getDebugFontSize(), 8, 72, 1));
 
-        ((ScreensDisplayPanel) pnlScreens).addChangeListener(e -> detector.repaint());
+        bind((ScreensDisplayPanel) pnlScreens);
 
         frame.setContentPane(root);
         frame.pack();
@@ -53,6 +67,11 @@ public class Form {
         frame.setDefaultCloseOperation(JDialog.DISPOSE_ON_CLOSE);
         frame.setVisible(true);
         frame.addWindowListener(new WindowAdapter() {
+            @Override
+            public void windowActivated(WindowEvent e) {
+                refresh();
+            }
+
             @Override
             public void windowClosed(WindowEvent e) {
                 if (closeListener != null) {
@@ -62,6 +81,45 @@ public class Form {
         });
     }
 
+    /**
+     * Applies the edits made on {@code screens}, as long as the detector is still on the layout
+     * they were made against; otherwise the panel is swapped for one showing the new layout.
+     */
+    private void bind(ScreensDisplayPanel screens) {
+        screens.addChangeListener(e -> {
+            PointDir.Integer now = detector.setEnabled(layout, e, !e.enabled);
+            if (now != null) {
+                screens.replace(e, now);
+            } else {
+                refresh();
+            }
+        });
+        screens.addBarrierListener(b -> {
+            List<Barrier> now = detector.setBarriers(layout, b);
+            if (now != null) {
+                screens.setBarriers(now);
+            } else {
+                refresh();
+            }
+        });
+    }
+
+    /**
+     * Replaces the screens panel if the detector has moved onto another layout since it was
+     * drawn.
+     */
+    private void refresh() {
+        if (layout.equals(detector.getLayout())) {
+            return;
+        }
+        GridConstraints constraints = ((GridLayoutManager) root.getLayout()).getConstraintsForComponent(pnlScreens);
+        root.remove(pnlScreens);
+        createUIComponents();
+        bind((ScreensDisplayPanel) pnlScreens);
+        root.add(pnlScreens, constraints);
+        frame.pack();
+    }
+
     public void bringToFront() {
         frame.requestFocus();
     }
@@ -70,6 +128,13 @@ public class Form {
         closeListener = method;
     }
 
+    /**
+     * @param method called with the new auto-refresh interval, in seconds, whenever it's changed
+     */
+    public void onIntervalChange(LongConsumer method) {
+        intervalListener = method;
+    }
+
     /**
      * Method generated by IntelliJ IDEA GUI Designer
      * >>> IMPORTANT!! <<<
@@ -110,11 +175,16 @@ public class Form {
     }
 
     public long getDuration() {
-        return (long) numSeconds.getValue();
+        return ((Number) numSeconds.getValue()).longValue();
     }
 
     private void createUIComponents() {
-        pnlScreens = new ScreensDisplayPanel(detector.getScreens(), detector.getCorners());
+        // read until the layout holds still, so the screens, corners, edges and barriers all belong to it
+        do {
+            layout = detector.getLayout();
+            pnlScreens = new ScreensDisplayPanel(detector.getScreens(), detector.getCorners(), detector.getEdges(),
+                    detector.getBarriers());
+        } while (!layout.equals(detector.getLayout()));
     }
 
 }
@@ -1,9 +1,13 @@
 package com.incognito.tools.stickycorners.detector.settings;
 
+import com.incognito.tools.stickycorners.detector.graphics.Barrier;
+import com.incognito.tools.stickycorners.detector.graphics.Direction;
 import com.incognito.tools.stickycorners.detector.graphics.PointDir;
 import com.incognito.tools.stickycorners.detector.graphics.Corner;
 
 import javax.swing.JPanel;
+import javax.swing.SwingUtilities;
+import java.awt.BasicStroke;
 import java.awt.Color;
 import java.awt.Dimension;
 import java.awt.Graphics;
@@ -13,35 +17,81 @@ import java.awt.Rectangle;
 import java.awt.event.MouseEvent;
 import java.awt.event.MouseListener;
 import java.awt.event.MouseMotionListener;
+import java.awt.geom.Line2D;
 import java.awt.geom.Path2D;
-import java.util.HashMap;
+import java.awt.image.BufferedImage;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashSet;
 import java.util.List;
-import java.util.Map;
 import java.util.Set;
 import java.util.function.Consumer;
-import java.util.stream.Collectors;
 
 /**
  * Created by jahorton on 1/2/2019
+ * <p>
+ * Besides switching corners on and off, the edges between screens can be edited: dragging along
+ * one with the left button makes that stretch a sticky barrier, with the right button a
+ * pass-through one, and clicking on one clears the barrier there. Edits cover both ways across.
  */
 public class ScreensDisplayPanel extends JPanel implements MouseListener, MouseMotionListener {
     private final List<Rectangle> screens;
     private final List<PointDir.Integer> points;
     private final Rectangle extents = new Rectangle(Integer.MAX_VALUE, Integer.MAX_VALUE, Integer.MIN_VALUE, Integer.MIN_VALUE);
 
+    private static final int CELL = 32;
+    private static final int SIZE = 10;
+    private static final int EDGE_SLOP = 4;
+
     private Point mousePos = new Point(-1, -1);
-    private Map<PointDir.Double, PointDir.Integer> scaledPoints;
-    private List<Rectangle.Double> scaledScreens;
-    private final Map<PointDir.Double, Path2D> tris = new HashMap<>();
+    private List<Rectangle.Double> scaledScreens = new ArrayList<>();
+    private final List<Tri> tris = new ArrayList<>();
+    private List<List<Tri>> grid;
+    private int gridColumns;
+    private Tri hovered;
+    private BufferedImage screenLayer;
 
     private Set<Consumer<PointDir.Integer>> listeners = new HashSet<>();
+    private Set<Consumer<List<Barrier>>> barrierListeners = new HashSet<>();
+
+    /**
+     * One way across each shared edge, in desktop coordinates; the other way is
+     * {@link #opposite}.
+     */
+    private final List<Barrier> edges = new ArrayList<>();
+    private List<Barrier> barriers;
+    private Barrier dragEdge;
+    private Point dragStart;
 
     private Dimension lastDimension;
 
-    public ScreensDisplayPanel(List<Rectangle> screens, List<PointDir.Integer> points) {
+    /**
+     * The clickable triangle drawn for one corner.
+     */
+    private static class Tri {
+        PointDir.Integer orig;
+        final Path2D shape;
+        final Rectangle bounds;
+
+        Tri(PointDir.Integer orig, Path2D shape) {
+            this.orig = orig;
+            this.shape = shape;
+            Rectangle b = shape.getBounds();
+            b.grow(1, 1);
+            this.bounds = b;
+        }
+    }
+
+    /**
+     * @param edges    every stretch of boundary between two of {@code screens}, relative to the top
+     *                 left of the desktop, like {@code points}
+     * @param barriers relative to the top left of the desktop too
+     */
+    public ScreensDisplayPanel(List<Rectangle> screens, List<PointDir.Integer> points, List<Barrier> edges,
+                               List<Barrier> barriers) {
         this.screens = screens;
-        this.points = points;
+        this.points = new ArrayList<>(points);
+        this.barriers = barriers;
 
         addMouseListener(this);
         addMouseMotionListener(this);
@@ -54,55 +104,167 @@ public class ScreensDisplayPanel extends JPanel implements MouseListener, MouseM
         }
         extents.width = extents.width - extents.x;
         extents.height = extents.height - extents.y;
+        for (Barrier b : edges) {
+            if (b.direction == Direction.RIGHT || b.direction == Direction.DOWN) {
+                this.edges.add(b.translate(extents.x, extents.y));
+            }
+        }
         setPreferredSize(new Dimension(extents.width / 20, extents.height / 20));
         updateScaled();
         lastDimension = getSize();
     }
 
-    private void updateScaled() {
-        scaledScreens = screens.stream()
-                .map(r -> scaleRect(r, getWidth() - 1, getHeight() - 1))
-                .collect(Collectors.toList());
-
-        scaledPoints = points.stream().collect(Collectors.toMap(p -> {
-            Point point = p.toPoint();
-            point.translate(extents.x, extents.y);
-            Point.Double scaled = scalePoint(point, getWidth() - 1, getHeight() - 1);
-            return new PointDir.Double(scaled.x, scaled.y, p.direction, p.corner, p.enabled);
-        }, p -> p));
+    /**
+     * Rescales the screens and corner triangles to the panel's size, and files every triangle
+     * under each {@link #CELL}-pixel grid cell its bounds touch so hit-testing only looks at the
+     * few triangles near the pointer.
+     */
+    void updateScaled() {
+        int width = getWidth() - 1;
+        int height = getHeight() - 1;
+        scaledScreens = new ArrayList<>(screens.size());
+        for (Rectangle r : screens) {
+            scaledScreens.add(scaleRect(r, width, height));
+        }
+        screenLayer = null;
 
         tris.clear();
-        for (PointDir.Double p : scaledPoints.keySet()) {
+        hovered = null;
+        for (PointDir.Integer orig : points) {
+            Point point = orig.toPoint();
+            point.translate(extents.x, extents.y);
+            Point.Double p = scalePoint(point, width, height);
             Path2D tri = new Path2D.Double();
             tri.moveTo(p.x, p.y);
             int dir;
-            int size = 10;
-            switch (p.direction) {
+            switch (orig.direction) {
                 case UP:
-                    dir = size * (p.corner == Corner.BL ? 1 : -1);
-                    tri.lineTo(p.x, p.y - size);
-                    tri.lineTo(p.x + dir, p.y - size);
+                    dir = SIZE * (orig.corner == Corner.BL ? 1 : -1);
+                    tri.lineTo(p.x, p.y - SIZE);
+                    tri.lineTo(p.x + dir, p.y - SIZE);
                     break;
                 case RIGHT:
-                    dir = size * (p.corner == Corner.TL ? 1 : -1);
-                    tri.lineTo(p.x + size, p.y);
-                    tri.lineTo(p.x + size, p.y + dir);
+                    dir = SIZE * (orig.corner == Corner.TL ? 1 : -1);
+                    tri.lineTo(p.x + SIZE, p.y);
+                    tri.lineTo(p.x + SIZE, p.y + dir);
                     break;
                 case DOWN:
-                    dir = size * (p.corner == Corner.TL ? 1 : -1);
-                    tri.lineTo(p.x, p.y + size);
-                    tri.lineTo(p.x + dir, p.y + size);
+                    dir = SIZE * (orig.corner == Corner.TL ? 1 : -1);
+                    tri.lineTo(p.x, p.y + SIZE);
+                    tri.lineTo(p.x + dir, p.y + SIZE);
                     break;
                 case LEFT:
-                    dir = size * (p.corner == Corner.TR ? 1 : -1);
-                    tri.lineTo(p.x - size, p.y);
-                    tri.lineTo(p.x - size, p.y + dir);
+                    dir = SIZE * (orig.corner == Corner.TR ? 1 : -1);
+                    tri.lineTo(p.x - SIZE, p.y);
+                    tri.lineTo(p.x - SIZE, p.y + dir);
                     break;
             }
             tri.closePath();
+            tris.add(new Tri(orig, tri));
+        }
+
+        gridColumns = Math.max(1, width / CELL + 1);
+        int rows = Math.max(1, height / CELL + 1);
+        grid = new ArrayList<>(Collections.nCopies(gridColumns * rows, null));
+        for (Tri t : tris) {
+            int x0 = clamp(t.bounds.x / CELL, gridColumns);
+            int x1 = clamp((t.bounds.x + t.bounds.width) / CELL, gridColumns);
+            int y0 = clamp(t.bounds.y / CELL, rows);
+            int y1 = clamp((t.bounds.y + t.bounds.height) / CELL, rows);
+            for (int y = y0; y <= y1; y++) {
+                for (int x = x0; x <= x1; x++) {
+                    int cell = y * gridColumns + x;
+                    if (grid.get(cell) == null) {
+                        grid.set(cell, new ArrayList<>(2));
+                    }
+                    grid.get(cell).add(t);
+                }
+            }
+        }
+    }
+
+    private static int clamp(int value, int size) {
+        return Math.max(0, Math.min(size - 1, value));
+    }
+
+    private Tri triAt(Point p) {
+        if (grid == null || p.x < 0 || p.y < 0) {
+            return null;
+        }
+        int x = p.x / CELL;
+        int y = p.y / CELL;
+        if (x >= gridColumns || y * gridColumns + x >= grid.size()) {
+            return null;
+        }
+        List<Tri> cell = grid.get(y * gridColumns + x);
+        if (cell != null) {
+            for (Tri t : cell) {
+                if (t.shape.contains(p)) {
+                    return t;
+                }
+            }
+        }
+        return null;
+    }
+
+    /**
+     * @return the edge within {@link #EDGE_SLOP} pixels of {@code p} on the panel, or null
+     */
+    private Barrier edgeAt(Point p) {
+        Line2D.Double line = new Line2D.Double();
+        for (Barrier e : edges) {
+            if (edgeLine(e, line).ptSegDist(p) <= EDGE_SLOP) {
+                return e;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * @return where on the panel the boundary crossed by {@code b}, in desktop coordinates, lies
+     */
+    private Line2D.Double edgeLine(Barrier b, Line2D.Double line) {
+        int width = getWidth() - 1;
+        int height = getHeight() - 1;
+        int boundary = b.line + (b.step() > 0 ? 1 : 0);
+        Point.Double from = b.isHorizontalCrossing()
+                ? scalePoint(new Point(boundary, b.from), width, height)
+                : scalePoint(new Point(b.from, boundary), width, height);
+        Point.Double to = b.isHorizontalCrossing()
+                ? scalePoint(new Point(boundary, b.to + 1), width, height)
+                : scalePoint(new Point(b.to + 1, boundary), width, height);
+        line.setLine(from, to);
+        return line;
+    }
 
-            tris.put(p, tri);
+    /**
+     * @return the desktop position along {@code edge} closest to {@code p} on the panel
+     */
+    private int along(Barrier edge, Point p) {
+        int value = edge.isHorizontalCrossing()
+                ? (int) scaleValue(p.y, 0, getHeight() - 1, extents.y, extents.y + extents.height)
+                : (int) scaleValue(p.x, 0, getWidth() - 1, extents.x, extents.x + extents.width);
+        return Math.max(edge.from, Math.min(edge.to, value));
+    }
+
+    private static Barrier opposite(Barrier b) {
+        Direction back = b.direction == Direction.RIGHT ? Direction.LEFT : Direction.UP;
+        return new Barrier(b.line + 1, b.from, b.to, back, b.sticky);
+    }
+
+    /**
+     * Lays a barrier over {@code [from, to]} of {@code edge}, both ways across, or clears that
+     * stretch if {@code sticky} is null, and hands the result to the listeners.
+     */
+    private void editEdge(Barrier edge, int from, int to, Boolean sticky) {
+        List<Barrier> next = barriers;
+        for (Barrier e : new Barrier[]{edge, opposite(edge)}) {
+            Barrier b = new Barrier(e.line, from, to, e.direction, sticky != null && sticky)
+                    .translate(-extents.x, -extents.y);
+            next = sticky != null ? Barrier.apply(next, b) : Barrier.clear(next, b, b.from, b.to);
         }
+        List<Barrier> edited = next;
+        barrierListeners.forEach(l -> l.accept(edited));
     }
 
     private double scaleValue(double value, double min, double max, double newMin, double newMax) {
@@ -121,6 +283,10 @@ public class ScreensDisplayPanel extends JPanel implements MouseListener, MouseM
                 scaleValue(value.y, extents.y, extents.y + extents.height, 0, height));
     }
 
+    /**
+     * The background and filled screens don't change between repaints, so they're kept in
+     * {@link #screenLayer}; only the triangles and outlines inside the clip are drawn on top.
+     */
     @Override
     public void paint(Graphics g) {
         Dimension d = getSize();
@@ -128,52 +294,119 @@ public class ScreensDisplayPanel extends JPanel implements MouseListener, MouseM
             lastDimension = d;
             updateScaled();
         }
+        if (getWidth() <= 0 || getHeight() <= 0) {
+            return;
+        }
 
-        g.setColor(getBackground());
-        g.clearRect(0, 0, getWidth(), getHeight());
+        if (screenLayer == null) {
+            screenLayer = new BufferedImage(getWidth(), getHeight(), BufferedImage.TYPE_INT_RGB);
+            Graphics2D layer = screenLayer.createGraphics();
+            layer.setColor(getBackground());
+            layer.fillRect(0, 0, getWidth(), getHeight());
+            layer.setColor(Color.lightGray);
+            for (Rectangle.Double r : scaledScreens) {
+                layer.fill(r);
+            }
+            layer.dispose();
+        }
 
         Graphics2D g2 = (Graphics2D) g;
+        Rectangle clip = g.getClipBounds();
+        g.drawImage(screenLayer, 0, 0, null);
+
+        for (Tri t : tris) {
+            if (clip != null && !clip.intersects(t.bounds)) {
+                continue;
+            }
+            Color highlight = t.orig.enabled ? Color.green : Color.red;
+            g.setColor(t == hovered ? highlight : highlight.darker());
+            g2.fill(t.shape);
+        }
 
+        g.setColor(Color.black);
         for (Rectangle.Double r : scaledScreens) {
-            g.setColor(Color.lightGray);
-            g2.fill(r);
+            g2.draw(r);
         }
 
-        for (Map.Entry<PointDir.Double, Path2D> kvp : tris.entrySet()) {
-            Color highlight = kvp.getKey().enabled ? Color.green : Color.red;
-            g.setColor(kvp.getValue().contains(mousePos) ? highlight : highlight.darker());
-            g2.fill(kvp.getValue());
+        Line2D.Double line = new Line2D.Double();
+        g2.setStroke(new BasicStroke(3));
+        for (Barrier b : barriers) {
+            if (b.direction == Direction.RIGHT || b.direction == Direction.DOWN) {
+                g.setColor(b.sticky ? Color.blue : Color.orange);
+                g2.draw(edgeLine(b.translate(extents.x, extents.y), line));
+            }
         }
+    }
 
-        for (Rectangle.Double r : scaledScreens){
-            g.setColor(Color.black);
-            g2.draw(r);
+    private void repaint(Tri t) {
+        if (t != null) {
+            repaint(t.bounds);
         }
     }
 
     @Override
     public void mouseClicked(MouseEvent e) {
-        for (Map.Entry<PointDir.Double, Path2D> kvp : tris.entrySet()){
-            PointDir.Double scaled = kvp.getKey();
-            if (kvp.getValue().contains(mousePos)) {
-                PointDir.Integer orig = scaledPoints.get(kvp.getKey());
-                orig.enabled = !orig.enabled;
-                scaled.enabled = orig.enabled;
-                listeners.forEach(l -> l.accept(orig));
-                repaint();
-                break;
+        Tri t = triAt(mousePos);
+        if (t != null) {
+            PointDir.Integer orig = t.orig;
+            listeners.forEach(l -> l.accept(orig));
+            return;
+        }
+        Barrier edge = edgeAt(e.getPoint());
+        if (edge != null) {
+            int at = along(edge, e.getPoint());
+            Barrier relative = edge.translate(-extents.x, -extents.y);
+            int shift = relative.from - edge.from;
+            for (Barrier b : barriers) {
+                if (b.sameEdge(relative) && b.from <= at + shift && b.to >= at + shift) {
+                    editEdge(edge, b.from - shift, b.to - shift, null);
+                    return;
+                }
+            }
+        }
+    }
+
+    /**
+     * Shows {@code barriers}, relative to the top left of the desktop, after a listener applied
+     * an edit.
+     */
+    public void setBarriers(List<Barrier> barriers) {
+        this.barriers = barriers;
+        repaint();
+    }
+
+    /**
+     * Shows {@code now} in place of {@code old}, after a listener had it enabled or disabled.
+     */
+    public void replace(PointDir.Integer old, PointDir.Integer now) {
+        int i = points.indexOf(old);
+        if (i >= 0) {
+            points.set(i, now);
+        }
+        for (Tri t : tris) {
+            if (t.orig == old) {
+                t.orig = now;
+                repaint(t);
             }
         }
     }
 
     @Override
     public void mousePressed(MouseEvent e) {
-
+        dragStart = e.getPoint();
+        dragEdge = triAt(dragStart) == null ? edgeAt(dragStart) : null;
     }
 
     @Override
     public void mouseReleased(MouseEvent e) {
-
+        Barrier edge = dragEdge;
+        dragEdge = null;
+        if (edge == null || e.getPoint().distance(dragStart) <= EDGE_SLOP) {
+            return;
+        }
+        int from = along(edge, dragStart);
+        int to = along(edge, e.getPoint());
+        editEdge(edge, Math.min(from, to), Math.max(from, to), !SwingUtilities.isRightMouseButton(e));
     }
 
     @Override
@@ -184,7 +417,8 @@ public class ScreensDisplayPanel extends JPanel implements MouseListener, MouseM
     @Override
     public void mouseExited(MouseEvent e) {
         mousePos = new Point(-1, -1);
-        repaint();
+        repaint(hovered);
+        hovered = null;
     }
 
     @Override
@@ -195,10 +429,28 @@ public class ScreensDisplayPanel extends JPanel implements MouseListener, MouseM
     @Override
     public void mouseMoved(MouseEvent e) {
         mousePos = e.getPoint();
-        repaint();
+        Tri t = triAt(mousePos);
+        if (t != hovered) {
+            repaint(hovered);
+            repaint(t);
+            hovered = t;
+        }
     }
 
+    /**
+     * Listeners are handed the corner that was clicked. The panel doesn't change it; whoever
+     * switches it on or off passes the result back through {@link #replace}.
+     */
     public void addChangeListener(Consumer<PointDir.Integer> e){
         listeners.add(e);
     }
+
+    /**
+     * Listeners are handed the barriers, relative to the top left of the desktop, as an edit
+     * would leave them; whoever applies them passes what was kept back through
+     * {@link #setBarriers}.
+     */
+    public void addBarrierListener(Consumer<List<Barrier>> e) {
+        barrierListeners.add(e);
+    }
 }
@@ -0,0 +1,162 @@
+package com.incognito.tools.stickycorners.detector;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.EventType;
+import jdk.jfr.FlightRecorder;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.Timespan;
+
+/**
+ * Java Flight Recorder events for what the detector does, the Java 11 version of the no-op
+ * classes in the Java 8 sources, which it replaces through the multi-release jar. Each
+ * {@code commit(...)} fills in the fields and commits only if {@link Event#shouldCommit} says the
+ * event is being recorded and passes its threshold.
+ * <p>
+ * {@code isRecorded()} asks JFR whether an event type is enabled, but only once a recording has
+ * initialized it: looking a type up registers it, which takes a noticeable while the first time
+ * and shouldn't happen on startup when nothing is being recorded.
+ */
+final class FlightEvents {
+    static final String CATEGORY = "Sticky Corners";
+    static final int TICK_SAMPLE = 64;
+
+    private FlightEvents() {
+    }
+
+    /**
+     * The types of the events fired from the sampling loop, looked up the first time they're
+     * needed.
+     */
+    private static final class Types {
+        static final EventType TICK = EventType.getEventType(Tick.class);
+        static final EventType CROSSING = EventType.getEventType(Crossing.class);
+        static final EventType WARP = EventType.getEventType(Warp.class);
+    }
+
+    @Name("com.incognito.tools.stickycorners.Tick")
+    @Label("Sampler Tick")
+    @Description("One pass of the sampling loop, one in " + TICK_SAMPLE + " recorded")
+    @Category(CATEGORY)
+    static final class Tick extends Event {
+        @Label("X")
+        int x;
+        @Label("Y")
+        int y;
+        @Label("Delay")
+        @Description("Time until the next tick")
+        @Timespan(Timespan.MILLISECONDS)
+        long delay;
+
+        static boolean isRecorded() {
+            return FlightRecorder.isInitialized() && Types.TICK.isEnabled();
+        }
+
+        void commit(int x, int y, long delayMillis) {
+            if (shouldCommit()) {
+                this.x = x;
+                this.y = y;
+                this.delay = delayMillis;
+                commit();
+            }
+        }
+    }
+
+    @Name("com.incognito.tools.stickycorners.Crossing")
+    @Label("Crossing")
+    @Description("The pointer got stuck on a corner or barrier")
+    @Category(CATEGORY)
+    static final class Crossing extends Event {
+        @Label("Rule")
+        String rule;
+        @Label("X")
+        int x;
+        @Label("Y")
+        int y;
+
+        static boolean isRecorded() {
+            return FlightRecorder.isInitialized() && Types.CROSSING.isEnabled();
+        }
+
+        void commit(CornerIndex index, int rule, int x, int y) {
+            if (shouldCommit()) {
+                this.rule = index.describe(rule);
+                this.x = x;
+                this.y = y;
+                commit();
+            }
+        }
+    }
+
+    @Name("com.incognito.tools.stickycorners.Warp")
+    @Label("Warp")
+    @Description("The pointer being moved across a corner or barrier")
+    @Category(CATEGORY)
+    static final class Warp extends Event {
+        @Label("Strategy")
+        String strategy;
+        @Label("To X")
+        int toX;
+        @Label("To Y")
+        int toY;
+
+        static boolean isRecorded() {
+            return FlightRecorder.isInitialized() && Types.WARP.isEnabled();
+        }
+
+        void commit(WarpStrategy strategy, int[] path) {
+            if (shouldCommit()) {
+                this.strategy = strategy.getName();
+                this.toX = path[path.length - 2];
+                this.toY = path[path.length - 1];
+                commit();
+            }
+        }
+    }
+
+    @Name("com.incognito.tools.stickycorners.Probe")
+    @Label("Layout Probe")
+    @Description("One read of the screen layout")
+    @Category(CATEGORY)
+    static final class Probe extends Event {
+        @Label("Probe")
+        String probe;
+        @Label("Screens")
+        @Description("Screens found, none if the probe failed")
+        int screens;
+
+        void commit(String probe, int screens) {
+            if (shouldCommit()) {
+                this.probe = probe;
+                this.screens = screens;
+                commit();
+            }
+        }
+    }
+
+    @Name("com.incognito.tools.stickycorners.Restart")
+    @Label("Restart")
+    @Description("The detector started on, or moved onto, a screen layout")
+    @Category(CATEGORY)
+    static final class Restart extends Event {
+        @Label("Screens")
+        int screens;
+        @Label("Started")
+        @Description("Whether this started the detector")
+        boolean started;
+        @Label("Changed")
+        @Description("Whether the layout differed from the one the detector had")
+        boolean changed;
+
+        void commit(int screens, boolean started, boolean changed) {
+            if (shouldCommit()) {
+                this.screens = screens;
+                this.started = started;
+                this.changed = changed;
+                commit();
+            }
+        }
+    }
+}
@@ -0,0 +1,209 @@
+package com.incognito.tools.stickycorners.detector;
+
+import com.incognito.tools.stickycorners.detector.TestLayouts.Window;
+import org.junit.Test;
+
+import java.awt.Rectangle;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Replays a fixed set of synthetic straight-line trajectories at every corner of a few layouts
+ * through the {@link PointerTracker}, at sampling steps from one pixel up to hundreds, and checks
+ * that the detector warps exactly when the path entered the boundary line inside an enabled
+ * corner's window.
+ * <p>
+ * Each trajectory heads for a point on a corner's boundary line, inside the window, just outside
+ * it, or far from it, at one of several slopes, and is sampled every {@code speed} pixels across
+ * the boundary, the last sample landing on the line. Fast diagonal swipes that sweep past a
+ * window along the boundary and land on the line away from it must not warp; ones that enter the
+ * line inside it must, whatever the sampling step. Trajectories that stop a pixel short of the
+ * line must never warp.
+ */
+public class CrossingTrajectoriesTest {
+    private static final int[] SPEEDS = {1, 4, 12, 60, 240};
+    /**
+     * Slopes along the boundary per pixel across it, as quarters, so every sample is a whole pixel
+     * at speeds that are multiples of four.
+     */
+    private static final int[] SLOPE_QUARTERS = {-12, -4, -1, 0, 1, 4, 12};
+    private static final int[] OFFSETS = {-200, -30, -7, -1, 0, 1, 7, 30, 200};
+
+    private static final Rectangle[][] LAYOUTS = {
+            {new Rectangle(0, 0, 1920, 1080), new Rectangle(1920, 900, 1920, 1080)},
+            {new Rectangle(0, 0, 2560, 1440), new Rectangle(300, 1440, 1920, 1080)},
+            {new Rectangle(-1920, -200, 1920, 1080), new Rectangle(0, 0, 2560, 1440), new Rectangle(2560, 700, 1080, 1920)},
+            {new Rectangle(0, 0, 1280, 1024), new Rectangle(1280, 0, 1280, 1024), new Rectangle(640, 1024, 1920, 1080)},
+            // overlapping by less than a window and detour
+            {new Rectangle(0, 0, 1920, 1200), new Rectangle(1920, 1193, 2560, 1440)},
+            {new Rectangle(0, 0, 1920, 1080), new Rectangle(-1278, 1080, 1280, 1024)},
+    };
+
+    @Test
+    public void warpsExactlyWhenThePathEntersAWindow() {
+        int hits = 0;
+        int misses = 0;
+        int falseWarps = 0;
+        List<String> failures = new ArrayList<>();
+        for (Rectangle[] layout : LAYOUTS) {
+            CornerIndex index = TestLayouts.index(layout, true);
+            List<Window> windows = TestLayouts.windows(layout);
+            for (Window w : windows) {
+                for (int offset : OFFSETS) {
+                    int target = (offset < 0 ? w.lo : offset > 0 ? w.hi : w.lo) + offset;
+                    for (int slope : SLOPE_QUARTERS) {
+                        for (int speed : SPEEDS) {
+                            if (slope % 4 != 0 && speed % 4 != 0) {
+                                continue;
+                            }
+                            for (boolean reach : new boolean[]{true, false}) {
+                                int[] samples = trajectory(layout, windows, w, target, slope, speed, reach);
+                                if (samples == null) {
+                                    continue;
+                                }
+                                boolean expected = reach && expectedWarp(windows, w, target, slope);
+                                String failure = replay(layout, index, w, samples, expected);
+                                if (expected) {
+                                    hits++;
+                                }
+                                if (failure != null) {
+                                    if (failure.startsWith("missed")) {
+                                        misses++;
+                                    } else {
+                                        falseWarps++;
+                                    }
+                                    if (failures.size() < 10) {
+                                        failures.add(failure + " at " + describe(w) + ", samples " + Arrays.toString(samples));
+                                    }
+                                }
+                            }
+                        }
+                    }
+                }
+            }
+        }
+        assertTrue("no trajectory entered a window", hits > 0);
+        assertEquals("misses " + failures, 0, misses);
+        assertEquals("false warps " + failures, 0, falseWarps);
+    }
+
+    @Test
+    public void disabledCornersNeverWarp() {
+        for (Rectangle[] layout : LAYOUTS) {
+            CornerIndex index = TestLayouts.index(layout, false);
+            List<Window> windows = TestLayouts.windows(layout);
+            for (Window w : windows) {
+                for (int speed : SPEEDS) {
+                    int[] samples = trajectory(layout, windows, w, w.lo, 0, speed, true);
+                    if (samples != null) {
+                        assertEquals(null, replay(layout, index, w, samples, false));
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * A diagonal swipe that sweeps along the boundary past a window and lands on the line far
+     * from it, which used to be taken across at the corner.
+     */
+    @Test
+    public void farLandingAfterSweepingPastAWindowDoesNotWarp() {
+        CornerIndex index = TestLayouts.index(LAYOUTS[0], true);
+        PointerTracker tracker = new PointerTracker();
+        assertEquals(-1, tracker.sample(index, 2100, 903));
+        assertEquals(-1, tracker.sample(index, 1920, 1500));
+        assertEquals(1920, tracker.getX());
+        assertEquals(1500, tracker.getY());
+    }
+
+    /**
+     * @return the samples of a path heading across {@code w}'s boundary line to {@code target}
+     * along it, sampled every {@code speed} pixels across it from three steps away, ending on the
+     * line, or a pixel short of it unless {@code reach}; or null if any sample would be off every
+     * screen, or on another corner's line, where coming in diagonally it may rightly be taken
+     * across there instead
+     */
+    private static int[] trajectory(Rectangle[] layout, List<Window> windows, Window w, int target, int slope,
+                                    int speed, boolean reach) {
+        int end = reach ? 0 : 1;
+        int[] samples = new int[8];
+        for (int k = 0; k < 4; k++) {
+            int away = end + (3 - k) * speed;
+            int a = w.line - w.step * away;
+            int b = target + slope * away / 4;
+            int x = w.x(a, b);
+            int y = w.y(a, b);
+            if (!TestLayouts.onScreen(layout, x, y) || onOtherLine(windows, w, a, b)) {
+                return null;
+            }
+            samples[k * 2] = x;
+            samples[k * 2 + 1] = y;
+        }
+        return samples;
+    }
+
+    /**
+     * @return whether the path to {@code target} on {@code w}'s line enters the line, half a
+     * pixel before it, inside a window on that line crossed the same way
+     */
+    private static boolean expectedWarp(List<Window> windows, Window w, int target, int slope) {
+        // half a pixel back from the line is slope / 8 along it; round half up
+        int entered = Math.floorDiv(8 * target + slope + 4, 8);
+        for (Window o : windows) {
+            if (o.horizontal == w.horizontal && o.step == w.step && o.line == w.line
+                    && entered >= o.lo && entered <= o.hi) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * @return what went wrong replaying {@code samples}, or null if the detector warped only on
+     * the last sample if {@code expected}, and never otherwise
+     */
+    private static String replay(Rectangle[] layout, CornerIndex index, Window w, int[] samples, boolean expected) {
+        PointerTracker tracker = new PointerTracker();
+        for (int k = 0; k < samples.length; k += 2) {
+            int decision = tracker.sample(index, samples[k], samples[k + 1]);
+            boolean last = k == samples.length - 2;
+            if (decision >= 0 && !(last && expected)) {
+                return "false warp on sample " + k / 2;
+            }
+            if (last && expected) {
+                if (decision < 0) {
+                    return "missed";
+                }
+                for (int p = 0; p < tracker.path.length; p += 2) {
+                    if (!TestLayouts.onScreen(layout, tracker.path[p], tracker.path[p + 1])) {
+                        return "false warp off screen to " + tracker.path[p] + "," + tracker.path[p + 1];
+                    }
+                }
+                int across = (w.horizontal ? samples[k] : samples[k + 1]) + w.step;
+                int endA = w.horizontal ? tracker.getX() : tracker.getY();
+                if (endA != across) {
+                    return "false warp that didn't cross, to " + tracker.getX() + "," + tracker.getY();
+                }
+            }
+        }
+        return null;
+    }
+
+    private static boolean onOtherLine(List<Window> windows, Window w, int a, int b) {
+        for (Window o : windows) {
+            if (o.horizontal == w.horizontal ? o.line != w.line && o.line == a : o.line == b) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static String describe(Window w) {
+        return (w.horizontal ? "x=" : "y=") + w.line + " step " + w.step + " [" + w.lo + ", " + w.hi + "]";
+    }
+}
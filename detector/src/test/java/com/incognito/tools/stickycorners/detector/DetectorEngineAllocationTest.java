@@ -0,0 +1,80 @@
+package com.incognito.tools.stickycorners.detector;
+
+import com.incognito.tools.stickycorners.detector.TestLayouts.Window;
+import org.junit.Test;
+
+import java.lang.management.ManagementFactory;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assume.assumeTrue;
+
+/**
+ * Checks that once the JIT has warmed up, a {@link DetectorEngine} tick allocates nothing, flight
+ * events, metrics, tracing and warps included. The pointer is scripted to keep running into a
+ * corner's window, so most strokes end in a crossing and a warp.
+ */
+public class DetectorEngineAllocationTest {
+    private static final int WARMUP = 200_000;
+    private static final int TICKS = 100_000;
+
+    @Test
+    public void ticksAllocateNothingAfterWarmup() {
+        java.lang.management.ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+        assumeTrue(threads instanceof com.sun.management.ThreadMXBean);
+        com.sun.management.ThreadMXBean bean = (com.sun.management.ThreadMXBean) threads;
+        assumeTrue(bean.isThreadAllocatedMemorySupported());
+        bean.setThreadAllocatedMemoryEnabled(true);
+
+        CornerIndex index = TestLayouts.index(TestLayouts.SIDE_BY_SIDE, true);
+        Window window = TestLayouts.windows(TestLayouts.SIDE_BY_SIDE).get(0);
+        ScriptedPointer pointer = new ScriptedPointer(window.stroke((window.lo + window.hi) / 2, 8, 6));
+        DetectorMetrics metrics = new DetectorMetrics();
+        metrics.setCorners(index);
+        DetectorEngine engine = new DetectorEngine(pointer, pointer,
+                new SamplingScheduler(SamplingScheduler.DEFAULT_MIN_INTERVAL, SamplingScheduler.DEFAULT_MAX_INTERVAL),
+                metrics, new PointerTrace(1024));
+
+        for (int t = 0; t < WARMUP; t++) {
+            engine.tick(index, System.nanoTime());
+        }
+        long id = Thread.currentThread().getId();
+        // whatever reading the counter costs by itself
+        long empty = -bean.getThreadAllocatedBytes(id) + bean.getThreadAllocatedBytes(id);
+        pointer.moves = 0;
+        long before = bean.getThreadAllocatedBytes(id);
+        for (int t = 0; t < TICKS; t++) {
+            engine.tick(index, System.nanoTime());
+        }
+        long allocated = bean.getThreadAllocatedBytes(id) - before - empty;
+
+        assertTrue("the script never warped", pointer.moves > 0);
+        assertEquals("bytes allocated over " + TICKS + " ticks", 0, allocated);
+    }
+
+    /**
+     * A pointer that goes through the same stroke over and over, whatever it's moved to.
+     */
+    private static class ScriptedPointer implements PointerSource, PointerActuator {
+        private final int[] samples;
+        private int next;
+        int moves;
+
+        ScriptedPointer(int[] samples) {
+            this.samples = samples;
+        }
+
+        @Override
+        public boolean locate(int[] position) {
+            position[0] = samples[next];
+            position[1] = samples[next + 1];
+            next = (next + 2) % samples.length;
+            return true;
+        }
+
+        @Override
+        public void moveTo(int x, int y) {
+            moves++;
+        }
+    }
+}
@@ -0,0 +1,152 @@
+package com.incognito.tools.stickycorners.detector;
+
+import com.incognito.tools.stickycorners.detector.TestLayouts.Window;
+import jdk.jfr.Event;
+import jdk.jfr.Name;
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Records the detector's flight events while a {@link DetectorEngine} runs. Runs against the
+ * packaged multi-release jar, so the Java 11 {@code jdk.jfr.Event}s are the ones in use.
+ */
+public class FlightEventsIT {
+    private static final int FAST_MILLIS = 5;
+    private static final int SLOW_MILLIS = 40;
+
+    @Test
+    public void eachWarpIsRecordedWithItsOwnDuration() throws Exception {
+        assertTrue("FlightEvents aren't JFR events here", Event.class.isAssignableFrom(FlightEvents.Warp.class));
+        ScriptedPointer pointer = pointer();
+        DetectorEngine engine = engine(pointer);
+        CornerIndex index = TestLayouts.index(TestLayouts.SIDE_BY_SIDE, true);
+
+        List<RecordedEvent> warps;
+        try (Recording recording = new Recording()) {
+            recording.enable(name(FlightEvents.Warp.class)).withoutThreshold();
+            recording.start();
+            pointer.millis = FAST_MILLIS;
+            warpOnce(engine, index, pointer);
+            pointer.millis = SLOW_MILLIS;
+            warpOnce(engine, index, pointer);
+            recording.stop();
+            warps = events(recording, FlightEvents.Warp.class);
+        }
+
+        assertEquals(2, warps.size());
+        Duration fast = warps.get(0).getDuration();
+        Duration slow = warps.get(1).getDuration();
+        // a warp is three moves
+        assertTrue("fast warp took " + fast, fast.toMillis() >= 3 * FAST_MILLIS);
+        assertTrue("slow warp took " + slow + ", fast " + fast,
+                slow.minus(fast).toMillis() >= 3 * (SLOW_MILLIS - FAST_MILLIS) / 2);
+    }
+
+    @Test
+    public void oneTickInSampleIsRecorded() throws Exception {
+        ScriptedPointer pointer = pointer();
+        DetectorEngine engine = engine(pointer);
+        CornerIndex index = TestLayouts.index(TestLayouts.SIDE_BY_SIDE, true);
+
+        List<RecordedEvent> ticks;
+        try (Recording recording = new Recording()) {
+            recording.enable(name(FlightEvents.Tick.class)).withoutThreshold();
+            recording.start();
+            for (int t = 0; t < 5 * FlightEvents.TICK_SAMPLE; t++) {
+                engine.tick(index, System.nanoTime());
+            }
+            recording.stop();
+            ticks = events(recording, FlightEvents.Tick.class);
+        }
+
+        assertEquals(5, ticks.size());
+    }
+
+    private static ScriptedPointer pointer() {
+        Window window = TestLayouts.windows(TestLayouts.SIDE_BY_SIDE).get(0);
+        return new ScriptedPointer(window.stroke((window.lo + window.hi) / 2, 8, 4));
+    }
+
+    private static DetectorEngine engine(ScriptedPointer pointer) {
+        return new DetectorEngine(pointer, pointer,
+                new SamplingScheduler(SamplingScheduler.DEFAULT_MIN_INTERVAL, SamplingScheduler.DEFAULT_MAX_INTERVAL),
+                new DetectorMetrics(), null);
+    }
+
+    private static void warpOnce(DetectorEngine engine, CornerIndex index, ScriptedPointer pointer) {
+        int before = pointer.moves;
+        for (int t = 0; t < 100 && pointer.moves == before; t++) {
+            engine.tick(index, System.nanoTime());
+        }
+        assertTrue("the stroke never warped", pointer.moves > before);
+    }
+
+    /**
+     * @return the JFR name of one of the {@link FlightEvents}, which are compiled against the Java 8
+     * classes but loaded from the Java 11 ones
+     */
+    private static String name(Class<?> type) {
+        return type.getAnnotation(Name.class).value();
+    }
+
+    private static List<RecordedEvent> events(Recording recording, Class<?> type) throws IOException {
+        Path file = Files.createTempFile("flight-events", ".jfr");
+        try {
+            recording.dump(file);
+            List<RecordedEvent> events = new ArrayList<>();
+            for (RecordedEvent e : RecordingFile.readAllEvents(file)) {
+                if (e.getEventType().getName().equals(name(type))) {
+                    events.add(e);
+                }
+            }
+            return events;
+        } finally {
+            Files.delete(file);
+        }
+    }
+
+    /**
+     * A pointer that goes through the same stroke over and over, taking {@code millis} for every
+     * move it's asked to make.
+     */
+    private static class ScriptedPointer implements PointerSource, PointerActuator {
+        private final int[] samples;
+        private int next;
+        int moves;
+        int millis;
+
+        ScriptedPointer(int[] samples) {
+            this.samples = samples;
+        }
+
+        @Override
+        public boolean locate(int[] position) {
+            position[0] = samples[next];
+            position[1] = samples[next + 1];
+            next = (next + 2) % samples.length;
+            return true;
+        }
+
+        @Override
+        public void moveTo(int x, int y) {
+            moves++;
+            try {
+                Thread.sleep(millis);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+}
@@ -0,0 +1,121 @@
+package com.incognito.tools.stickycorners.detector;
+
+import com.incognito.tools.stickycorners.detector.graphics.Corner;
+import com.incognito.tools.stickycorners.detector.graphics.PointDir;
+
+import java.awt.Rectangle;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Screen layouts for the detector tests, and where their corners should take the pointer across,
+ * worked out from the screens themselves rather than read back out of a {@link CornerIndex}, so
+ * tests only ever reach the index through {@link CornerIndex#match} and {@link PointerTracker}.
+ */
+final class TestLayouts {
+    /**
+     * Two screens side by side, the right one lower, so they share part of one vertical edge.
+     */
+    static final Rectangle[] SIDE_BY_SIDE = {new Rectangle(0, 0, 1920, 1080), new Rectangle(1920, 900, 1920, 1080)};
+
+    private TestLayouts() {
+    }
+
+    /**
+     * @return the index the detector builds for {@code layout} with every corner enabled, or with
+     * every one disabled
+     */
+    static CornerIndex index(Rectangle[] layout, boolean enabled) {
+        Rectangle bounds = new Rectangle();
+        for (Rectangle r : layout) {
+            Rectangle.union(bounds, r, bounds);
+        }
+        List<PointDir.Integer> corners = new ArrayList<>();
+        for (PointDir.Integer p : Corners.find(Arrays.asList(layout))) {
+            corners.add(new PointDir.Integer(p.x - bounds.x, p.y - bounds.y, p.direction, p.corner, enabled));
+        }
+        return new CornerIndex(corners, bounds);
+    }
+
+    /**
+     * @return the window of every corner of {@code layout}
+     */
+    static List<Window> windows(Rectangle[] layout) {
+        List<Window> windows = new ArrayList<>();
+        for (PointDir.Integer p : Corners.find(Arrays.asList(layout))) {
+            windows.add(new Window(layout, p));
+        }
+        return windows;
+    }
+
+    static boolean onScreen(Rectangle[] layout, int x, int y) {
+        for (Rectangle r : layout) {
+            if (r.contains(x, y)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Where one corner takes the pointer across, in desktop coordinates: the column or row
+     * {@code line} the pointer is on before it crosses, moving {@code step} along it, and the
+     * stretch {@code [lo, hi]} along the line reaching from the corner up to
+     * {@link CornerIndex#WINDOW} pixels into its screen, for as long as the screens on both sides
+     * still meet. {@code horizontal} is true for a boundary crossed moving left or right.
+     */
+    static final class Window {
+        final boolean horizontal;
+        final int line;
+        final int step;
+        final int lo;
+        final int hi;
+
+        Window(Rectangle[] layout, PointDir.Integer p) {
+            boolean left = p.corner == Corner.TL || p.corner == Corner.BL;
+            boolean top = p.corner == Corner.TL || p.corner == Corner.TR;
+            horizontal = p.direction.isHorizontalBoundary();
+            line = horizontal ? p.x : p.y;
+            step = horizontal ? (left ? -1 : 1) : (top ? -1 : 1);
+            int inward = horizontal ? (top ? 1 : -1) : (left ? 1 : -1);
+            int corner = horizontal ? p.y : p.x;
+            int far = corner;
+            while (Math.abs(far + inward - corner) <= CornerIndex.WINDOW && meet(layout, far + inward)) {
+                far += inward;
+            }
+            lo = Math.min(corner, far);
+            hi = Math.max(corner, far);
+        }
+
+        private boolean meet(Rectangle[] layout, int b) {
+            return onScreen(layout, x(line, b), y(line, b)) && onScreen(layout, x(line + step, b), y(line + step, b));
+        }
+
+        /**
+         * @return the x of the point {@code a} across the boundary and {@code b} along it
+         */
+        int x(int a, int b) {
+            return horizontal ? a : b;
+        }
+
+        int y(int a, int b) {
+            return horizontal ? b : a;
+        }
+
+        /**
+         * @return {@code count} samples, as {@code x0, y0, x1, y1, ...}, of a stroke heading
+         * straight across the boundary {@code speed} pixels a sample and landing on the line at
+         * {@code along}
+         */
+        int[] stroke(int along, int speed, int count) {
+            int[] samples = new int[count * 2];
+            for (int k = 0; k < count; k++) {
+                int a = line - step * (count - 1 - k) * speed;
+                samples[k * 2] = x(a, along);
+                samples[k * 2 + 1] = y(a, along);
+            }
+            return samples;
+        }
+    }
+}
@@ -3,17 +3,67 @@ package com.incognito.tools.stickycorners.graphics;
 import java.awt.GraphicsDevice;
 import java.awt.GraphicsEnvironment;
 import java.awt.Rectangle;
+import java.io.IOException;
+import java.util.Arrays;
 
 /**
  * Created by jahorton on 9/13/2018
  */
 public class Main {
-    public static void main(String[] args){
+    private static final long WATCH_INTERVAL = 100;
+
+    public static void main(String[] args) throws InterruptedException {
+        if (Arrays.asList(args).contains("--watch")) {
+            watch();
+        } else {
+            print(getBounds());
+        }
+    }
+
+    private static Rectangle[] getBounds() {
         GraphicsDevice[] devices = GraphicsEnvironment.getLocalGraphicsEnvironment().getScreenDevices();
-        System.out.println(devices.length);
-        for (GraphicsDevice g : devices){
-            Rectangle r = g.getDefaultConfiguration().getBounds();
-            System.out.println(r.x + " " + r.y + " " + r.width + " " + r.height);
+        Rectangle[] bounds = new Rectangle[devices.length];
+        for (int i = 0; i < devices.length; i++) {
+            bounds[i] = devices[i].getDefaultConfiguration().getBounds();
+        }
+        return bounds;
+    }
+
+    private static void print(Rectangle[] bounds) {
+        StringBuilder sb = new StringBuilder();
+        sb.append(bounds.length).append('\n');
+        for (Rectangle r : bounds) {
+            sb.append(r.x).append(' ').append(r.y).append(' ').append(r.width).append(' ').append(r.height).append('\n');
+        }
+        System.out.print(sb);
+        System.out.flush();
+    }
+
+    /**
+     * Stays running and prints the layout again, in the same format, every time it changes.
+     * Exits once the parent closes our stdin or stops reading our stdout.
+     */
+    private static void watch() throws InterruptedException {
+        Thread parent = new Thread(() -> {
+            try {
+                while (System.in.read() != -1) {
+                    // only waiting for the pipe to close
+                }
+            } catch (IOException ignored) {
+            }
+            System.exit(0);
+        });
+        parent.setDaemon(true);
+        parent.start();
+
+        Rectangle[] last = null;
+        while (!System.out.checkError()) {
+            Rectangle[] bounds = getBounds();
+            if (!Arrays.equals(bounds, last)) {
+                print(bounds);
+                last = bounds;
+            }
+            Thread.sleep(WATCH_INTERVAL);
         }
     }
 }